@@ -0,0 +1,59 @@
+package com.oliver;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Oliver
+ * <p>
+ * producer contention: run with -t 1,2,4,8,16 (or -t max) and compare the throughput per thread.
+ * The baseline is one HashMap of lists behind a single lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AccumulatorBenchmark {
+    // shared targets, replaced every iteration so they don't grow without bound
+    private ConcurrentDocumentAccumulator accumulator;
+    private Map<String, List<Document>> lockedMap;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        accumulator = new ConcurrentDocumentAccumulator(64);
+        lockedMap = new HashMap<>();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private static final int POOL_SIZE = 4096;
+        private List<Document> documents;
+        private int next;
+
+        @Setup
+        public void setUp() {
+            documents = SyntheticDocuments.generate(POOL_SIZE, 100, 365, Thread.currentThread().getId(), new DocumentFormatter());
+        }
+
+        Document next() {
+            return documents.get(next = (next + 1) & (POOL_SIZE - 1));
+        }
+    }
+
+    @Benchmark
+    public void stripedAdd(final Producer producer) {
+        accumulator.add(producer.next());
+    }
+
+    @Benchmark
+    public void singleLockAdd(final Producer producer) {
+        Document document = producer.next();
+        synchronized (lockedMap) {
+            lockedMap.computeIfAbsent(document.getCreatedBy(), key -> new ArrayList<>()).add(document);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.oliver;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Oliver
+ * <p>
+ * the per row parsers and formatters of DocumentFormatter, each over a pool of realistic inputs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatterBenchmark {
+    // constants
+    private static final int POOL_SIZE = 1024;
+    // inputs
+    private final DocumentFormatter documentFormatter = new DocumentFormatter();
+    private final String[] sizeTexts = new String[POOL_SIZE];
+    private final String[] timeTexts = new String[POOL_SIZE];
+    private final String[] descriptions = new String[POOL_SIZE];
+    private final long[] sizes = new long[POOL_SIZE];
+    private final long[] times = new long[POOL_SIZE];
+    private final StringBuilder buffer = new StringBuilder(64);
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Document> documents = SyntheticDocuments.generate(POOL_SIZE, 100, 365, 1, documentFormatter);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Document document = documents.get(i);
+            sizes[i] = document.getSizeInBytes();
+            times[i] = document.getCreatedTime();
+            descriptions[i] = document.getDescription();
+            sizeTexts[i] = DocumentFormatter.formatSize(sizes[i]);
+            timeTexts[i] = documentFormatter.formatTime(times[i]);
+        }
+    }
+
+    private int next() {
+        return next = (next + 1) & (POOL_SIZE - 1);
+    }
+
+    @Benchmark
+    public Long parseSize() {
+        return DocumentFormatter.parseSize(sizeTexts[next()]);
+    }
+
+    @Benchmark
+    public long parseSizeCharSequence() {
+        String text = sizeTexts[next()];
+        return DocumentFormatter.parseSize(text, 0, text.length());
+    }
+
+    @Benchmark
+    public Long parseTime() {
+        return documentFormatter.parseTime(timeTexts[next()]);
+    }
+
+    @Benchmark
+    public String formatSize() {
+        return DocumentFormatter.formatSize(sizes[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder formatSizeIntoBuffer() {
+        buffer.setLength(0);
+        return DocumentFormatter.formatSize(sizes[next()], buffer);
+    }
+
+    @Benchmark
+    public String formatDescription() {
+        return DocumentFormatter.formatDescription(descriptions[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder formatDescriptionIntoBuffer() {
+        buffer.setLength(0);
+        return DocumentFormatter.formatDescription(descriptions[next()], buffer);
+    }
+
+    @Benchmark
+    public String formatTime() {
+        return documentFormatter.formatTime(times[next()]);
+    }
+
+    @Benchmark
+    public StringBuilder formatDateIntoBuffer() {
+        buffer.setLength(0);
+        return documentFormatter.formatDate(times[next()], buffer);
+    }
+}
@@ -0,0 +1,144 @@
+package com.oliver;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Oliver
+ * <p>
+ * end to end report generation from 1k to 10M synthetic documents, the report text (or its gzip) is counted but not kept
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms12g", "-Xmx12g"})
+public class ReportBenchmark {
+    private static final ReportSpec BY_EDITOR_LARGEST_FIRST = new ReportSpec(ReportSpec.GroupBy.LAST_MODIFIED_BY,
+            ReportSpec.SortKey.descending(ReportSpec.Field.SIZE_IN_BYTES), ReportSpec.SortKey.ascending(ReportSpec.Field.MODIFIED_TIME));
+    // the last week, over 500 k
+    private static final long WEEK_FROM = SyntheticDocuments.LATEST_DAY - 7 * SyntheticDocuments.MILLIS_PER_DAY;
+    private static final long SIZE_FROM = 500 << 10;
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int documentCount;
+    // inputs
+    private final DocumentFormatter documentFormatter = new DocumentFormatter();
+    private List<Document> documents;
+    private DocumentBatch batch;
+    private IndexedDocumentCollection indexedCollection;
+    private Path storePath;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // about one author per 100 documents and three years of days
+        documents = SyntheticDocuments.generate(documentCount, Math.max(1, documentCount / 100), 3 * 365, 1, documentFormatter);
+        batch = DocumentBatch.fromDocuments(documents, documentFormatter);
+        indexedCollection = new IndexedDocumentCollection(batch);
+        try {
+            storePath = Files.createTempFile("veev-benchmark-", ".bin");
+            DocumentStore.write(batch, storePath);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        documents = null;
+        batch = null;
+        indexedCollection = null;
+        Files.deleteIfExists(storePath);
+    }
+
+    @Benchmark
+    public long serialReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        new Document().writeDocumentsReport(documents, appendable);
+        return appendable.count;
+    }
+
+    @Benchmark
+    public long summaryOnlyReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        DocumentRollup.of(batch, ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism() * 4).writeSummary(appendable);
+        return appendable.count;
+    }
+
+    @Benchmark
+    public long parallelReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        new ParallelDocumentReporter().writeDocumentsReport(documents, appendable);
+        return appendable.count;
+    }
+
+    @Benchmark
+    public long batchReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        batch.writeDocumentsReport(appendable);
+        return appendable.count;
+    }
+
+    @Benchmark
+    public long specReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        BY_EDITOR_LARGEST_FIRST.writeDocumentsReport(batch, appendable);
+        return appendable.count;
+    }
+
+    @Benchmark
+    public int storeOpen() throws IOException {
+        try (DocumentStore store = DocumentStore.open(storePath, documentFormatter)) {
+            return store.size();
+        }
+    }
+
+    @Benchmark
+    public long storeReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        try (DocumentStore store = DocumentStore.open(storePath, documentFormatter)) {
+            store.writeDocumentsReport(appendable);
+        }
+        return appendable.count;
+    }
+
+    @Benchmark
+    public long compressedReport() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        try (CompressedReportOutput output = new CompressedReportOutput(outputStream)) {
+            batch.writeDocumentsReport(output);
+        }
+        return outputStream.getByteCount();
+    }
+
+    @Benchmark
+    public long indexedRangeReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        indexedCollection.writeDocumentsReport(IndexedDocumentCollection.Query.all()
+                .createdBetween(WEEK_FROM, Long.MAX_VALUE).sizeBetween(SIZE_FROM, Long.MAX_VALUE), appendable);
+        return appendable.count;
+    }
+
+    @Benchmark
+    public long filteredRangeReport() throws IOException {
+        SyntheticDocuments.CountingAppendable appendable = new SyntheticDocuments.CountingAppendable();
+        List<Document> filtered = new ArrayList<>();
+        for (Document document : documents) {
+            if (document.createdTime != null && document.createdTime >= WEEK_FROM
+                    && document.sizeInBytes != null && document.sizeInBytes >= SIZE_FROM) {
+                filtered.add(document);
+            }
+        }
+        new Document().writeDocumentsReport(filtered, appendable);
+        return appendable.count;
+    }
+}
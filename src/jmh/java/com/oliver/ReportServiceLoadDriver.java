@@ -0,0 +1,71 @@
+package com.oliver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Author: Oliver
+ * <p>
+ * closed loop load test of DocumentReportService: every client sends a request, waits for the whole report, and repeats.
+ * 9 in 10 requests ask for one random author, the rest for the full report. Prints throughput and latency percentiles.
+ * <p>
+ * java -cp target/veev-*-jar-with-dependencies.jar com.oliver.ReportServiceLoadDriver [documents] [clients] [requestsPerClient]
+ */
+public class ReportServiceLoadDriver {
+
+    public static void main(final String[] args) throws Exception {
+        int documentCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int requestsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> documents = SyntheticDocuments.generate(documentCount, Math.max(1, documentCount / 100), 3 * 365, 1, documentFormatter);
+        DocumentReportSnapshot snapshot = DocumentReportSnapshot.of(documents);
+        String[] authors = snapshot.getGroups().keySet().toArray(new String[0]);
+
+        long[] latencies = new long[clients * requestsPerClient];
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong rows = new AtomicLong();
+        try (DocumentReportService service = new DocumentReportService(snapshot, null, clients, 60_000)) {
+            List<Thread> threads = new ArrayList<>(clients);
+            long start = System.nanoTime();
+            for (int client = 0; client < clients; client++) {
+                final int first = client * requestsPerClient;
+                final Random random = new Random(client);
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        DocumentReportService.ReportRequest request = random.nextInt(10) == 0
+                                ? DocumentReportService.ReportRequest.all()
+                                : DocumentReportService.ReportRequest.forAuthors(authors[random.nextInt(authors.length)]);
+                        long requestStart = System.nanoTime();
+                        try {
+                            rows.addAndGet(service.submit(request, new SyntheticDocuments.CountingAppendable()).get());
+                        } catch (RejectedExecutionException e) {
+                            rejected.incrementAndGet();
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                        latencies[first + i] = System.nanoTime() - requestStart;
+                    }
+                }, "client-" + client);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            System.out.printf("%d documents, %d clients x %d requests, %d rows written, %d rejected%n",
+                    documentCount, clients, requestsPerClient, rows.get(), rejected.get());
+            System.out.printf("throughput %.1f requests/s%n", latencies.length / (elapsed / 1e9));
+            System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6, latencies[latencies.length - 1] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.oliver;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Oliver
+ * <p>
+ * one group of documentCount rows ordered by createdTime: the radix sort, the primitive merge sort it replaced and the
+ * boxed Document comparator of the row path. Every invocation sorts a fresh copy of the same shuffled rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SortBenchmark {
+    @Param({"1000000", "4000000"})
+    private int documentCount;
+    // createdTime in millis over a year, so the high bytes are all equal
+    private long[] createdTimes;
+    private int[] shuffled;
+    private List<Document> documents;
+    // scratch
+    private int[] rows;
+    private int[] scratch;
+    private List<Document> documentsCopy;
+    private final RadixSort radixSort = new RadixSort();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(23);
+        createdTimes = new long[documentCount];
+        shuffled = new int[documentCount];
+        documents = new ArrayList<>(documentCount);
+        for (int row = 0; row < documentCount; row++) {
+            createdTimes[row] = 1_500_000_000_000L + (long) (random.nextDouble() * 365 * 24 * 3600 * 1000);
+            shuffled[row] = row;
+            Document document = new Document();
+            document.createdTime = createdTimes[row];
+            documents.add(document);
+        }
+        rows = new int[documentCount];
+        scratch = new int[documentCount];
+        documentsCopy = new ArrayList<>(documents);
+    }
+
+    @Benchmark
+    public int[] radixSort() {
+        System.arraycopy(shuffled, 0, rows, 0, documentCount);
+        radixSort.sort(rows, 0, documentCount, createdTimes);
+        return rows;
+    }
+
+    @Benchmark
+    public int[] mergeSort() {
+        System.arraycopy(shuffled, 0, rows, 0, documentCount);
+        DocumentBatch.mergeSort(rows, scratch, 0, documentCount, createdTimes);
+        return rows;
+    }
+
+    @Benchmark
+    public List<Document> comparatorSort() {
+        for (int row = 0; row < documentCount; row++) {
+            documentsCopy.set(row, documents.get(row));
+        }
+        documentsCopy.sort(Document.CREATED_TIME_ORDER);
+        return documentsCopy;
+    }
+}
@@ -0,0 +1,90 @@
+package com.oliver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Author: Oliver
+ * <p>
+ * synthetic documents for the benchmarks, with skewed distributions like real feeds:
+ * a few authors own most documents, and most documents were created in the last few days
+ */
+final class SyntheticDocuments {
+    // constants
+    static final long MILLIS_PER_DAY = 86_400_000L;
+    // 2019-03-03T00:00:00Z
+    static final long LATEST_DAY = 1551571200000L;
+    private static final String[] DESCRIPTIONS = {
+            "Short one",
+            "Inventory list of the warehouse",
+            "An exhaustive look at the life and times of a jazz pianist",
+            "Supercalifragilisticexpialidocious_and_then_some more words",
+            "",
+    };
+
+    private SyntheticDocuments() {
+    }
+
+    /**
+     * @param count       the number of documents
+     * @param authorCount the number of distinct authors, author i is about (i + 1)^(2/3) times rarer than author 0
+     * @param dayCount    the number of distinct creation days
+     * @param seed        the same seed gives the same documents
+     */
+    static List<Document> generate(final int count, final int authorCount, final int dayCount, final long seed, final DocumentFormatter documentFormatter) {
+        Random random = new Random(seed);
+        String[] authors = new String[authorCount];
+        for (int i = 0; i < authorCount; i++) {
+            // every third author is lower case, so the case insensitive ordering has work to do
+            authors[i] = i % 3 == 0 ? "author " + i : "Author " + i;
+        }
+
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String author = authors[skewed(random, authorCount)];
+            long createdTime = LATEST_DAY - skewed(random, dayCount) * MILLIS_PER_DAY + (long) (random.nextDouble() * MILLIS_PER_DAY);
+            long modifiedTime = createdTime + (long) (random.nextDouble() * 30 * MILLIS_PER_DAY);
+            // sizes from bytes to tb, uniform in the exponent
+            long sizeInBytes = (long) Math.pow(2, random.nextDouble() * 42);
+            Document document = new Document(author, "doc " + i, DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)], sizeInBytes, createdTime, modifiedTime);
+            document.setLastModifiedBy(authors[skewed(random, authorCount)]);
+            document.setDocumentFormatter(documentFormatter);
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    /**
+     * @return 0..bound-1, small values far more likely than large ones
+     */
+    private static int skewed(final Random random, final int bound) {
+        double u = random.nextDouble();
+        return (int) (bound * u * u * u);
+    }
+
+    /**
+     * an Appendable that only counts, so report benchmarks measure producing the text rather than storing it
+     */
+    static final class CountingAppendable implements Appendable {
+        long count;
+
+        @Override
+        public Appendable append(final CharSequence csq) {
+            count += csq.length();
+            return this;
+        }
+
+        @Override
+        public Appendable append(final CharSequence csq, final int start, final int end) {
+            count += end - start;
+            return this;
+        }
+
+        @Override
+        public Appendable append(final char c) {
+            count++;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.oliver;
+
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * interns author names (createdBy, lastModifiedBy) into dense int ids.
+ * <p>
+ * every name is hashed once when it is interned, and its case folded sort key is computed once as well,
+ * so ranking the authors in Document.CREATED_BY_ORDER compares precomputed Strings without allocating.
+ * Grouping and ordering then work on the ids and ranks alone. Not thread safe.
+ */
+class AuthorDictionary {
+    // constants
+    static final int NULL_ID = -1;
+    // dictionary, indexed by id
+    private final List<String> names = new ArrayList<>();
+    private final List<String> foldedKeys = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    // rank by id, null once a new name was interned
+    private int[] ranks;
+
+    /**
+     * @param name any author, null allowed
+     * @return the id of the name, NULL_ID for null
+     */
+    int intern(final String name) {
+        if (name == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            foldedKeys.add(name.toLowerCase());
+            ids.put(name, id);
+            ranks = null;
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the name, NULL_ID when it was never interned
+     */
+    int getId(final String name) {
+        Integer id = name == null ? null : ids.get(name);
+        return id == null ? NULL_ID : id;
+    }
+
+    String getName(final int id) {
+        return id == NULL_ID ? null : names.get(id);
+    }
+
+    String getFoldedKey(final int id) {
+        return id == NULL_ID ? null : foldedKeys.get(id);
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * the same order as Document.CREATED_BY_ORDER on the names
+     */
+    int compare(final int id1, final int id2) {
+        int result = foldedKeys.get(id1).compareTo(foldedKeys.get(id2));
+        return result != 0 ? result : names.get(id1).compareTo(names.get(id2));
+    }
+
+    /**
+     * #1.2. the rank of every id in case insensitive order, the raw name breaks ties; cached until the next new name
+     *
+     * @return rank indexed by id, do not modify
+     */
+    int[] ranks() {
+        if (ranks == null) {
+            Integer[] sorted = new Integer[names.size()];
+            for (int id = 0; id < sorted.length; id++) {
+                sorted[id] = id;
+            }
+            Arrays.sort(sorted, this::compare);
+            int[] ranks = new int[sorted.length];
+            for (int rank = 0; rank < sorted.length; rank++) {
+                ranks[sorted[rank]] = rank;
+            }
+            this.ranks = ranks;
+        }
+        return ranks;
+    }
+}
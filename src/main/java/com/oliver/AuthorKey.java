@@ -0,0 +1,45 @@
+package com.oliver;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Author: Oliver
+ * <p>
+ * a createdBy with its case folded form computed once, ordered like Document.CREATED_BY_ORDER.
+ * <p>
+ * sorted maps, sets and sorts of group keys compare these instead of calling toLowerCase() on both sides
+ * of every comparison. Equal when the names are equal.
+ */
+final class AuthorKey implements Comparable<AuthorKey> {
+    final String name;
+    final String foldedKey;
+
+    AuthorKey(final String name) {
+        // Validate preconditions
+        Validate.notNull(name);
+
+        this.name = name;
+        this.foldedKey = name.toLowerCase();
+    }
+
+    @Override
+    public int compareTo(final AuthorKey other) {
+        int result = foldedKey.compareTo(other.foldedKey);
+        return result != 0 ? result : name.compareTo(other.name);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof AuthorKey && name.equals(((AuthorKey) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
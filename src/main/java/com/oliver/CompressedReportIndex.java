@@ -0,0 +1,219 @@
+package com.oliver;
+
+import lombok.Getter;
+import org.apache.commons.lang3.Validate;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Author: Oliver
+ * <p>
+ * where the blocks and groups of a CompressedReportOutput file are, kept next to it to read one author without
+ * inflating the rest.
+ * <p>
+ * groups are placed by their offset in the uncompressed report, so a large group may span several blocks.
+ * <p>
+ * File layout (DataOutput, big endian; str is int length of the UTF-8 bytes, then the bytes):
+ * header  long magic, int version, int blockCount, int groupCount
+ * blocks  per block: long offset, int compressed length, long uncompressed offset, int uncompressed length
+ * groups  per group in report order: str key, long offset and long length in the uncompressed report
+ */
+@Getter
+class CompressedReportIndex {
+    // constants
+    static final long MAGIC = 0x5645455647524931L;// "VEEVGRI1"
+    static final int VERSION = 2;
+    // blocks in file order
+    private final List<Block> blocks = new ArrayList<>();
+    // groups in report order
+    private final Map<String, Group> groups = new LinkedHashMap<>();
+
+    @Getter
+    static final class Block {
+        private final long offset;
+        private final int compressedLength;
+        private final long uncompressedOffset;
+        private final int uncompressedLength;
+
+        Block(final long offset, final int compressedLength, final long uncompressedOffset, final int uncompressedLength) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.uncompressedOffset = uncompressedOffset;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+
+    @Getter
+    static final class Group {
+        private final String key;
+        private final long offset;
+        private final long length;
+
+        Group(final String key, final long offset, final long length) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * @param uncompressedOffset where the block starts in the uncompressed report, right after the previous block
+     * @return the number of the block
+     */
+    int addBlock(final long offset, final int compressedLength, final long uncompressedOffset, final int uncompressedLength) {
+        // Validate preconditions
+        Validate.isTrue(uncompressedOffset == getUncompressedLength());
+
+        blocks.add(new Block(offset, compressedLength, uncompressedOffset, uncompressedLength));
+        return blocks.size() - 1;
+    }
+
+    /**
+     * adds the group, or replaces it when it grew
+     */
+    void addGroup(final String key, final long offset, final long length) {
+        // Validate preconditions
+        Validate.notNull(key);
+        Validate.isTrue(0 <= offset && 0 <= length && offset + length <= getUncompressedLength());
+
+        groups.put(key, new Group(key, offset, length));
+    }
+
+    /**
+     * @return the length of the uncompressed report so far
+     */
+    long getUncompressedLength() {
+        if (blocks.isEmpty()) {
+            return 0;
+        }
+        Block last = blocks.get(blocks.size() - 1);
+        return last.uncompressedOffset + last.uncompressedLength;
+    }
+
+    /**
+     * @param channel the compressed report
+     * @param key     a group key
+     * @return the report text of the group, header included; null when the report has no such group
+     * @throws IOException
+     */
+    String readGroup(final FileChannel channel, final String key) throws IOException {
+        Group group = groups.get(key);
+        if (group == null) {
+            return null;
+        }
+        Validate.isTrue(group.length <= Integer.MAX_VALUE, "group too large for a String, use copyGroup(): %s", key);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) group.length);
+        copyGroup(channel, key, bytes);
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * streams the UTF-8 report text of one group, inflating one of its blocks at a time
+     *
+     * @return false when the report has no such group
+     */
+    boolean copyGroup(final FileChannel channel, final String key, final OutputStream outputStream) throws IOException {
+        Group group = groups.get(key);
+        if (group == null) {
+            return false;
+        }
+        long from = group.offset;
+        long to = group.offset + group.length;
+        for (int blockNumber = firstBlock(from); from < to; blockNumber++) {
+            Block block = blocks.get(blockNumber);
+            byte[] uncompressed = readBlock(channel, blockNumber);
+            int start = (int) (from - block.uncompressedOffset);
+            int end = (int) Math.min(block.uncompressedLength, to - block.uncompressedOffset);
+            outputStream.write(uncompressed, start, end - start);
+            from = block.uncompressedOffset + end;
+        }
+        return true;
+    }
+
+    /**
+     * the block holding the uncompressed offset
+     */
+    private int firstBlock(final long uncompressedOffset) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blocks.get(middle).uncompressedOffset <= uncompressedOffset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the uncompressed bytes of one block
+     */
+    byte[] readBlock(final FileChannel channel, final int blockNumber) throws IOException {
+        Block block = blocks.get(blockNumber);
+        ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength);
+        long position = block.offset;
+        while (compressed.hasRemaining()) {
+            int read = channel.read(compressed, position);
+            if (read < 0) {
+                throw new EOFException("compressed report is shorter than its index");
+            }
+            position += read;
+        }
+        byte[] uncompressed = new byte[block.uncompressedLength];
+        try (DataInputStream inputStream = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed.array())))) {
+            inputStream.readFully(uncompressed);
+        }
+        return uncompressed;
+    }
+
+    void write(final Path path) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            outputStream.writeLong(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeInt(blocks.size());
+            outputStream.writeInt(groups.size());
+            for (Block block : blocks) {
+                outputStream.writeLong(block.offset);
+                outputStream.writeInt(block.compressedLength);
+                outputStream.writeLong(block.uncompressedOffset);
+                outputStream.writeInt(block.uncompressedLength);
+            }
+            for (Group group : groups.values()) {
+                // not writeUTF(), which stops at 64 KB
+                DocumentRecordCodec.writeString(outputStream, group.key);
+                outputStream.writeLong(group.offset);
+                outputStream.writeLong(group.length);
+            }
+        }
+    }
+
+    static CompressedReportIndex read(final Path path) throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(path, StandardOpenOption.READ)))) {
+            // Validate preconditions
+            Validate.isTrue(inputStream.readLong() == MAGIC, "not a compressed report index");
+            int version = inputStream.readInt();
+            Validate.isTrue(version == VERSION, "unsupported compressed report index version: %d", version);
+
+            CompressedReportIndex index = new CompressedReportIndex();
+            int blockCount = inputStream.readInt();
+            int groupCount = inputStream.readInt();
+            for (int i = 0; i < blockCount; i++) {
+                index.addBlock(inputStream.readLong(), inputStream.readInt(), inputStream.readLong(), inputStream.readInt());
+            }
+            for (int i = 0; i < groupCount; i++) {
+                index.addGroup(DocumentRecordCodec.readString(inputStream), inputStream.readLong(), inputStream.readLong());
+            }
+            return index;
+        }
+    }
+}
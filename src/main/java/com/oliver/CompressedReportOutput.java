@@ -0,0 +1,326 @@
+package com.oliver;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Author: Oliver
+ * <p>
+ * a report target that writes gzip instead of text: every report path writes into it like into any other Appendable.
+ * <p>
+ * the text is cut into blocks of about blockSize chars at the start of a group (DocumentReportWriter, or
+ * startGroup() for writers that render on their own, tells it where the groups start), and every block becomes its own
+ * gzip member. A group longer than blockSize is cut into several blocks of at most 2 * blockSize chars, so one large
+ * author never has to sit in memory whole. The members are compressed in parallel and written in order, with at most
+ * 2 blocks per thread in flight. The concatenation is a valid .gz file, so gunzip or a GZIPInputStream reads the whole
+ * report. getIndex() says where every block and group is, so one author can be read by inflating only its own blocks
+ * (see CompressedReportIndex.readGroup()).
+ * <p>
+ * e.g.
+ * CompressedReportOutput output = new CompressedReportOutput(Files.newOutputStream(path));
+ * try {
+ * document.writeDocumentsReport(documents, output);
+ * } finally {
+ * output.close();
+ * }
+ * output.getIndex().write(indexPath);
+ */
+@Slf4j
+class CompressedReportOutput implements Appendable, Flushable, Closeable {
+    // constants
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    static final int MAX_BLOCK_SIZE = 1 << 28;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    // settings
+    private final OutputStream outputStream;
+    private final int blockSize;
+    private final int level;
+    private final ExecutorService executorService;
+    private final boolean isOwningExecutor;
+    private final int maxPendingBlocks;
+    // the block being filled, and where its groups start
+    private final StringBuilder block;
+    private final List<String> keys = new ArrayList<>();
+    private final List<Integer> groupStarts = new ArrayList<>();
+    // compressed or being compressed, oldest first
+    private final Deque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    // state
+    private long offset;
+    private long uncompressedOffset;
+    // the last group started, its length grows with every block written
+    private String openKey;
+    private long openGroupOffset;
+    private boolean isClosed;
+    @Getter
+    private final CompressedReportIndex index = new CompressedReportIndex();
+
+    /**
+     * 1M char blocks at the default level, on a pool of one thread per core
+     */
+    CompressedReportOutput(final OutputStream outputStream) {
+        this(outputStream, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param outputStream    receives the gzip members, closed by close()
+     * @param blockSize       the chars after which the next group starts a new block; a larger group is cut at twice that
+     * @param level           Deflater level, 1 (fast) to 9 (small), or -1 for the default
+     * @param executorService compresses the blocks, null for an own pool; a given executor is not shut down by close()
+     * @param parallelism     the threads expected to compress, bounds the blocks held in memory
+     */
+    CompressedReportOutput(final OutputStream outputStream, final int blockSize, final int level,
+                           final ExecutorService executorService, final int parallelism) {
+        // Validate preconditions
+        Validate.notNull(outputStream);
+        Validate.isTrue(0 < blockSize && blockSize <= MAX_BLOCK_SIZE);
+        Validate.isTrue(level == Deflater.DEFAULT_COMPRESSION || (Deflater.BEST_SPEED <= level && level <= Deflater.BEST_COMPRESSION));
+        Validate.isTrue(parallelism > 0);
+
+        this.outputStream = outputStream;
+        this.blockSize = blockSize;
+        this.level = level;
+        this.isOwningExecutor = executorService == null;
+        this.executorService = executorService == null ? Executors.newFixedThreadPool(parallelism) : executorService;
+        this.maxPendingBlocks = 2 * parallelism;
+        this.block = new StringBuilder(blockSize + DocumentReportWriter.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * called before the header of every group, by DocumentReportWriter or by whoever renders the groups itself
+     */
+    void startGroup(final String key) throws IOException {
+        ensureOpen();
+        if (block.length() >= blockSize) {
+            seal();
+        }
+        keys.add(key);
+        groupStarts.add(block.length());
+    }
+
+    @Override
+    public Appendable append(final CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+        ensureOpen();
+        // in slices, so a long text cuts an oversized group as it goes instead of growing the block first
+        int from = start;
+        while (from < end) {
+            int to = (int) Math.min(end, from + Math.max(1L, 2L * blockSize - block.length()));
+            block.append(csq, from, to);
+            from = to;
+            sealIfOversized();
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(final char c) throws IOException {
+        ensureOpen();
+        block.append(c);
+        sealIfOversized();
+        return this;
+    }
+
+    /**
+     * cuts a group that outgrew 2 * blockSize, never between the two chars of a surrogate pair
+     */
+    private void sealIfOversized() throws IOException {
+        if (block.length() < 2 * blockSize) {
+            return;
+        }
+        char last = block.charAt(block.length() - 1);
+        if (Character.isHighSurrogate(last)) {
+            block.setLength(block.length() - 1);
+            seal();
+            block.append(last);
+        } else {
+            seal();
+        }
+    }
+
+    /**
+     * ends the current block and writes every block so far; the end of a report, as flushing after every group would
+     * give up most of the compression
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        seal();
+        while (!pendingBlocks.isEmpty()) {
+            writeOldest();
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * flushes and closes the stream, the index is complete afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            isClosed = true;
+            for (PendingBlock pendingBlock : pendingBlocks) {
+                pendingBlock.future.cancel(true);
+            }
+            if (isOwningExecutor) {
+                executorService.shutdownNow();
+            }
+            outputStream.close();
+        }
+        log.debug("close(): {} blocks, {} groups, {} bytes", index.getBlocks().size(), index.getGroups().size(), offset);
+    }
+
+    private void seal() throws IOException {
+        if (block.length() == 0) {
+            return;
+        }
+        String text = block.toString();
+        String[] blockKeys = keys.toArray(new String[0]);
+        int[] starts = new int[groupStarts.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = groupStarts.get(i);
+        }
+        block.setLength(0);
+        keys.clear();
+        groupStarts.clear();
+
+        while (pendingBlocks.size() >= maxPendingBlocks) {
+            writeOldest();
+        }
+        pendingBlocks.addLast(new PendingBlock(blockKeys, executorService.submit(() -> compress(text, starts, level))));
+    }
+
+    private void writeOldest() throws IOException {
+        PendingBlock pendingBlock = pendingBlocks.removeFirst();
+        CompressedBlock compressed;
+        try {
+            compressed = pendingBlock.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while compressing the report");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+
+        outputStream.write(compressed.bytes);
+        index.addBlock(offset, compressed.bytes.length, uncompressedOffset, compressed.uncompressedLength);
+        for (int i = 0; i < pendingBlock.keys.length; i++) {
+            if (openKey != null) {
+                index.addGroup(openKey, openGroupOffset, uncompressedOffset + compressed.groupOffsets[i] - openGroupOffset);
+            }
+            openKey = pendingBlock.keys[i];
+            openGroupOffset = uncompressedOffset + compressed.groupOffsets[i];
+        }
+        offset += compressed.bytes.length;
+        uncompressedOffset += compressed.uncompressedLength;
+        // the last group so far ends here until a later block continues it
+        if (openKey != null) {
+            index.addGroup(openKey, openGroupOffset, uncompressedOffset - openGroupOffset);
+        }
+    }
+
+    /**
+     * one gzip member of the UTF-8 text, noting where every group starts in the uncompressed bytes
+     */
+    private static CompressedBlock compress(final String text, final int[] groupStarts, final int level) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() / 4 + 64);
+        int[] groupOffsets = new int[groupStarts.length];
+        CountingOutputStream counter;
+        try (GZIPOutputStream gzip = new LeveledGZIPOutputStream(bytes, level)) {
+            counter = new CountingOutputStream(gzip);
+            // encodes straight into the deflater, no byte[] copy of the text
+            Writer writer = new OutputStreamWriter(counter, StandardCharsets.UTF_8);
+            int from = 0;
+            for (int i = 0; i < groupStarts.length; i++) {
+                writer.write(text, from, groupStarts[i] - from);
+                writer.flush();
+                groupOffsets[i] = (int) counter.count;
+                from = groupStarts[i];
+            }
+            writer.write(text, from, text.length() - from);
+            writer.flush();
+        }
+        return new CompressedBlock(bytes, groupOffsets, (int) counter.count);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (isClosed) {
+            throw new IOException("compressed report output is closed");
+        }
+    }
+
+    private static final class PendingBlock {
+        private final String[] keys;
+        private final Future<CompressedBlock> future;
+
+        private PendingBlock(final String[] keys, final Future<CompressedBlock> future) {
+            this.keys = keys;
+            this.future = future;
+        }
+    }
+
+    private static final class CompressedBlock {
+        private final byte[] bytes;
+        // the start of every group in the uncompressed bytes of the block
+        private final int[] groupOffsets;
+        private final int uncompressedLength;
+
+        private CompressedBlock(final ByteArrayOutputStream bytes, final int[] groupOffsets, final int uncompressedLength) {
+            this.bytes = bytes.toByteArray();
+            this.groupOffsets = groupOffsets;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * GZIPOutputStream always deflates at the default level, the deflater it uses is only reachable from a subclass
+     */
+    private static final class LeveledGZIPOutputStream extends GZIPOutputStream {
+        private LeveledGZIPOutputStream(final OutputStream outputStream, final int level) throws IOException {
+            super(outputStream, IO_BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Author: Oliver
+ * <p>
+ * thread safe collector of documents from many producer threads, reported through consistent snapshots.
+ * <p>
+ * producers are spread over lock stripes by thread id, and every stripe keeps its own createdBy -> append-only list map,
+ * so producers on different stripes never touch the same lock or map and a stripe lock is almost never contended.
+ * Nothing is sorted on add: snapshot() takes all the stripe locks once to fix the length of every list, copies the
+ * fixed prefixes one stripe at a time, then merges, groups and sorts outside of any lock.
+ * <p>
+ * documents from one thread keep their add order among documents created at the same time,
+ * so a single producer gets the same report as Document.printDocumentsReportHelper(); a missing createdTime sorts first.
+ */
+@Slf4j
+class ConcurrentDocumentAccumulator {
+    // settings
+    private final Stripe[] stripes;
+    private final int mask;
+
+    ConcurrentDocumentAccumulator() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param concurrency the expected number of producer threads, rounded up to a power of 2 stripes
+     */
+    ConcurrentDocumentAccumulator(final int concurrency) {
+        // Validate preconditions
+        Validate.isTrue(concurrency > 0);
+
+        int stripeCount = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = stripeCount - 1;
+    }
+
+    /**
+     * @param document not null, with a createdBy
+     */
+    void add(final Document document) {
+        // Validate preconditions
+        Validate.notNull(document);
+        Validate.notNull(document.createdBy, "createdBy is the group key of the report");
+
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & mask];
+        stripe.lock.lock();
+        try {
+            stripe.groups.computeIfAbsent(document.createdBy, key -> new ArrayList<>()).add(document);
+            stripe.size++;
+        } finally {
+            stripe.lock.unlock();
+        }
+        DocumentMetrics.ROWS_INGESTED.increment();
+    }
+
+    void addAll(final Collection<Document> documents) {
+        for (Document document : documents) {
+            add(document);
+        }
+    }
+
+    /**
+     * @return the number of documents added so far
+     */
+    long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return every document added before the snapshot started and none added after it ended, grouped and sorted
+     */
+    DocumentReportSnapshot snapshot() {
+        // #1. fix the length of every list while holding all the locks, so the cut is the same for all stripes
+        List<Map<String, Integer>> lengths = new ArrayList<>(stripes.length);
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            for (Stripe stripe : stripes) {
+                Map<String, Integer> stripeLengths = new HashMap<>(stripe.groups.size() * 2);
+                for (Map.Entry<String, List<Document>> entry : stripe.groups.entrySet()) {
+                    stripeLengths.put(entry.getKey(), entry.getValue().size());
+                }
+                lengths.add(stripeLengths);
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].lock.unlock();
+            }
+        }
+
+        // #2. the lists are append only, copy the fixed prefixes one stripe at a time
+        Map<String, List<Document>> mapString2Documents = new HashMap<>();
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                for (Map.Entry<String, Integer> entry : lengths.get(i).entrySet()) {
+                    mapString2Documents.computeIfAbsent(entry.getKey(), key -> new ArrayList<>())
+                            .addAll(stripe.groups.get(entry.getKey()).subList(0, entry.getValue()));
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        // #3. group and sort without any lock
+        log.debug("snapshot(): {} groups", mapString2Documents.size());
+        AuthorKey[] keys = new AuthorKey[mapString2Documents.size()];
+        int count = 0;
+        for (String key : mapString2Documents.keySet()) {
+            keys[count++] = new AuthorKey(key);
+        }
+        Arrays.sort(keys);
+        LinkedHashMap<String, List<Document>> groups = new LinkedHashMap<>(keys.length * 2);
+        RadixSort radixSort = new RadixSort();
+        for (AuthorKey key : keys) {
+            List<Document> group = mapString2Documents.get(key.name);
+            Document.sortByCreatedTime(group, radixSort);
+            groups.put(key.name, group);
+        }
+        return new DocumentReportSnapshot(groups);
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, List<Document>> groups = new HashMap<>();
+        long size;
+    }
+}
@@ -5,8 +5,9 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
 
 /**
@@ -26,6 +27,10 @@ public class Document {
     Long modifiedTime;// (#2.2 format: yyyy-MM-dd)
     // Utility
     DocumentFormatter documentFormatter;
+    // #1.2. Sort the groups using document.createdBy ascending, case insensitive (the raw key breaks ties so the order is total)
+    static final Comparator<String> CREATED_BY_ORDER = Comparator.comparing((String key) -> key.toLowerCase()).thenComparing(Comparator.naturalOrder());
+    // #1.3. Sort each sub list of documents by document.createdTime ascending, a missing createdTime first
+    static final Comparator<Document> CREATED_TIME_ORDER = Comparator.comparingLong(o -> o.createdTime == null ? Long.MIN_VALUE : o.createdTime);
 
     /**
      * constructors
@@ -74,13 +79,36 @@ public class Document {
     }
 
     String toStringBeautify() {
-        return "Document{" +
-                "'" + name + '\'' +
-                ",'" + DocumentFormatter.formatDescription(description) + '\'' +
-                "," + DocumentFormatter.formatSize(sizeInBytes) +
-                "," + documentFormatter.formatTime(createdTime) +
-                "," + documentFormatter.formatTime(modifiedTime) +
-                '}';
+        return appendBeautify(new StringBuilder()).toString();
+    }
+
+    StringBuilder appendBeautify(final StringBuilder stringBuilder) {
+        return appendBeautify(stringBuilder, documentFormatter, name, description,
+                sizeInBytes != null, sizeInBytes == null ? 0 : sizeInBytes,
+                createdTime != null, createdTime == null ? 0 : createdTime,
+                modifiedTime != null, modifiedTime == null ? 0 : modifiedTime);
+    }
+
+    /**
+     * the one place the row format lives, shared with the columnar DocumentBatch; appends without any intermediate String
+     */
+    static StringBuilder appendBeautify(final StringBuilder stringBuilder, final DocumentFormatter documentFormatter, final String name, final String description,
+                                        final boolean hasSize, final long sizeInBytes, final boolean hasCreatedTime, final long createdTime,
+                                        final boolean hasModifiedTime, final long modifiedTime) {
+        stringBuilder.append("Document{'").append(name).append("','");
+        DocumentFormatter.formatDescription(description, stringBuilder).append("',");
+        if (hasSize) {
+            DocumentFormatter.formatSize(sizeInBytes, stringBuilder);
+        }
+        stringBuilder.append(',');
+        if (hasCreatedTime) {
+            documentFormatter.formatDate(createdTime, stringBuilder);
+        }
+        stringBuilder.append(',');
+        if (hasModifiedTime) {
+            documentFormatter.formatDate(modifiedTime, stringBuilder);
+        }
+        return stringBuilder.append('}');
     }
 
     /**
@@ -116,7 +144,13 @@ public class Document {
      */
     public void printDocumentsReport(final List<Document> documents) {
         log.info("Begin printDocumentsReport() -------------- ");
-        System.out.println(printDocumentsReportHelper(documents).toString());
+        try {
+            // PrintStream is Appendable as well, keeping the platform charset println() used
+            writeDocumentsReport(documents, (Appendable) System.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println();
         log.info("End   printDocumentsReport() -------------- ");
     }
 
@@ -126,36 +160,128 @@ public class Document {
      * @param documents
      */
     public StringBuilder printDocumentsReportHelper(final List<Document> documents) {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeDocumentsReport(documents, stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+
+    /**
+     * streams the same report as printDocumentsReportHelper() in UTF-8, the stream is flushed but NOT closed
+     *
+     * @param documents
+     * @param outputStream not null
+     * @throws IOException
+     */
+    public void writeDocumentsReport(final List<Document> documents, final OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeDocumentsReport(documents, writer);
+        writer.flush();
+    }
+
+    /**
+     * streams the same report as printDocumentsReportHelper() group by group, so only one chunk of text is held at a time
+     *
+     * @param documents
+     * @param appendable not null
+     * @throws IOException
+     */
+    public void writeDocumentsReport(final List<Document> documents, final Appendable appendable) throws IOException {
         // Validate preconditions
         if (CollectionUtils.isEmpty(documents)) {
-            return new StringBuilder();
+            return;
+        }
+
+        // stream the groups
+        LinkedHashMap<String, List<Document>> groups = groupDocuments(documents);
+        long start = DocumentMetrics.start();
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        for (Map.Entry<String, List<Document>> entry : groups.entrySet()) {
+            reportWriter.writeGroup(entry.getKey(), entry.getValue());
         }
+        reportWriter.flush();
+        DocumentMetrics.FORMATTING.recordSince(start);
+        DocumentMetrics.REPORTS.increment();
+    }
 
-        // prepare the map
-        log.debug("\n\nprintDocumentsReport(): documents = {}\n", documents);
-        Map<String, PriorityQueue<Document>> mapString2Documents = new HashMap<>();
+    /**
+     * groups the documents by createdBy in report order
+     * <p>
+     * the groups are ordered by CREATED_BY_ORDER and each group by CREATED_TIME_ORDER; the sort is stable,
+     * so documents created at the same time keep their input order
+     *
+     * @param documents not null
+     * @return the groups, iterating in report order
+     */
+    static LinkedHashMap<String, List<Document>> groupDocuments(final Collection<Document> documents) {
+        return groupDocuments(documents, null);
+    }
+
+    /**
+     * @param documents not null
+     * @param rollup    also accumulates every document in the same pass, null for none
+     * @return the groups, iterating in report order
+     */
+    static LinkedHashMap<String, List<Document>> groupDocuments(final Collection<Document> documents, final DocumentRollup rollup) {
+        // prepare the groups, every createdBy is hashed and case folded once
+        log.debug("groupDocuments(): documents.size() = {}", documents.size());
+        long start = DocumentMetrics.start();
+        AuthorDictionary authors = new AuthorDictionary();
+        List<List<Document>> groupsById = new ArrayList<>();
         for (Document document : documents) {
-            String key = document.getCreatedBy();
-            if (!mapString2Documents.containsKey(key)) {
-                // #1.3. Sort each sub list of documents by document.createdTime ascending
-                mapString2Documents.put(key, new PriorityQueue<>(Comparator.comparingLong(o -> o.createdTime)));
+            int id = authors.intern(Objects.requireNonNull(document.getCreatedBy(), "createdBy is the group key of the report"));
+            if (id == groupsById.size()) {
+                groupsById.add(new ArrayList<>());
+            }
+            groupsById.get(id).add(document);
+            if (rollup != null) {
+                rollup.add(document);
             }
-            mapString2Documents.get(key).add(document);
         }
 
-        // populate the stringBuilder
-        StringBuilder stringBuilder = new StringBuilder();
-        log.debug("mapString2Documents.keySet().size() = {}", mapString2Documents.keySet().size());
-        // #1.2. Sort the groups using document.createdBy ascending, case insensitive
-        List<String> keys = mapString2Documents.keySet().stream().sorted(Comparator.comparing(String::toLowerCase)).collect(Collectors.toList());
-        for (String key : keys) {
-            log.debug("key = {}; \nmapString2Documents.get(key).size() = {}", key, mapString2Documents.get(key).size());
-            stringBuilder.append(key).append('\n');
-            for (Document document : mapString2Documents.get(key)) {
-                log.debug("document = {}", document);
-                stringBuilder.append(document.toStringBeautify()).append('\n');
-            }
+        log.debug("authors.size() = {}", authors.size());
+        DocumentMetrics.GROUPING.recordSince(start);
+        start = DocumentMetrics.start();
+        int[] ranks = authors.ranks();
+        int[] idsByRank = new int[ranks.length];
+        for (int id = 0; id < ranks.length; id++) {
+            idsByRank[ranks[id]] = id;
+        }
+        LinkedHashMap<String, List<Document>> groups = new LinkedHashMap<>(ranks.length * 2);
+        RadixSort radixSort = new RadixSort();
+        for (int id : idsByRank) {
+            List<Document> group = groupsById.get(id);
+            sortByCreatedTime(group, radixSort);
+            groups.put(authors.getName(id), group);
+        }
+        DocumentMetrics.SORTING.recordSince(start);
+        return groups;
+    }
+
+    /**
+     * stable sort by CREATED_TIME_ORDER; a large group is radix sorted on its createdTimes instead of comparing boxed Longs
+     */
+    static void sortByCreatedTime(final List<Document> group, final RadixSort radixSort) {
+        int size = group.size();
+        if (size < RadixSort.MIN_RADIX_LENGTH) {
+            group.sort(CREATED_TIME_ORDER);
+            return;
+        }
+        Document[] documents = group.toArray(new Document[0]);
+        long[] createdTimes = new long[size];
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            Long createdTime = documents[row].createdTime;
+            createdTimes[row] = createdTime == null ? Long.MIN_VALUE : createdTime;
+            rows[row] = row;
+        }
+        radixSort.sort(rows, 0, size, createdTimes);
+        for (int i = 0; i < size; i++) {
+            group.set(i, documents[rows[i]]);
         }
-        return stringBuilder;
     }
 }
@@ -0,0 +1,337 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * columnar (struct of arrays) container for many documents.
+ * <p>
+ * sizeInBytes, createdTime and modifiedTime are primitive long columns holding NULL_VALUE for a missing value,
+ * createdBy and lastModifiedBy are dictionary encoded into int columns (-1 for null), and the DocumentFormatter is
+ * held once per batch instead of once per document. Grouping, sorting and the report run on the columns directly.
+ */
+@Slf4j
+class DocumentBatch {
+    // constants
+    static final long NULL_VALUE = Long.MIN_VALUE;
+    static final int NULL_ID = AuthorDictionary.NULL_ID;
+    private static final int DEFAULT_CAPACITY = 16;
+    // Utility
+    private final DocumentFormatter documentFormatter;
+    // columns
+    private int size;
+    private String[] names;
+    private String[] descriptions;
+    private int[] createdByIds;
+    private int[] lastModifiedByIds;
+    private long[] sizesInBytes;
+    private long[] createdTimes;
+    private long[] modifiedTimes;
+    // createdBy and lastModifiedBy share one dictionary
+    private final AuthorDictionary authors = new AuthorDictionary();
+
+    DocumentBatch(final DocumentFormatter documentFormatter) {
+        this(documentFormatter, DEFAULT_CAPACITY);
+    }
+
+    DocumentBatch(final DocumentFormatter documentFormatter, final int initialCapacity) {
+        // Validate preconditions
+        Validate.notNull(documentFormatter);
+        Validate.isTrue(initialCapacity >= 0);
+
+        this.documentFormatter = documentFormatter;
+        int capacity = Math.max(initialCapacity, 1);
+        names = new String[capacity];
+        descriptions = new String[capacity];
+        createdByIds = new int[capacity];
+        lastModifiedByIds = new int[capacity];
+        sizesInBytes = new long[capacity];
+        createdTimes = new long[capacity];
+        modifiedTimes = new long[capacity];
+    }
+
+    /**
+     * adapter from the row representation
+     *
+     * @param documents         not null
+     * @param documentFormatter used for the report of the batch
+     * @return the batch, rows in the order of the collection
+     */
+    static DocumentBatch fromDocuments(final Collection<Document> documents, final DocumentFormatter documentFormatter) {
+        DocumentBatch batch = new DocumentBatch(documentFormatter, documents.size());
+        for (Document document : documents) {
+            batch.add(document);
+        }
+        return batch;
+    }
+
+    /**
+     * adapter to the row representation, every document gets the formatter of the batch
+     *
+     * @return one Document per row, in row order
+     */
+    List<Document> toDocuments() {
+        List<Document> documents = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            documents.add(getDocument(row));
+        }
+        return documents;
+    }
+
+    Document getDocument(final int row) {
+        Validate.isTrue(0 <= row && row < size, "row out of range: %d of %d", row, size);
+        Document document = new Document(getCreatedBy(row), names[row], descriptions[row], box(sizesInBytes[row]), box(createdTimes[row]), box(modifiedTimes[row]));
+        document.lastModifiedBy = getLastModifiedBy(row);
+        document.documentFormatter = documentFormatter;
+        return document;
+    }
+
+    void add(final Document document) {
+        add(document.createdBy, document.name, document.description, document.lastModifiedBy,
+                unbox(document.sizeInBytes), unbox(document.createdTime), unbox(document.modifiedTime));
+    }
+
+    /**
+     * @param createdBy      not null, it is the group key of the report
+     * @param sizeInBytes    NULL_VALUE when missing
+     * @param createdTime    NULL_VALUE when missing
+     * @param modifiedTime   NULL_VALUE when missing
+     */
+    void add(final String createdBy, final String name, final String description, final String lastModifiedBy,
+             final long sizeInBytes, final long createdTime, final long modifiedTime) {
+        // Validate preconditions
+        Validate.notNull(createdBy);
+
+        if (size == names.length) {
+            grow();
+        }
+        names[size] = name;
+        descriptions[size] = description;
+        createdByIds[size] = authors.intern(createdBy);
+        lastModifiedByIds[size] = authors.intern(lastModifiedBy);
+        sizesInBytes[size] = sizeInBytes;
+        createdTimes[size] = createdTime;
+        modifiedTimes[size] = modifiedTime;
+        size++;
+    }
+
+    /**
+     * appends all the rows of another batch, re-encoding its authors into this dictionary
+     *
+     * @param other not null
+     */
+    void addAll(final DocumentBatch other) {
+        for (int row = 0; row < other.size; row++) {
+            add(other.getCreatedBy(row), other.names[row], other.descriptions[row], other.getLastModifiedBy(row),
+                    other.sizesInBytes[row], other.createdTimes[row], other.modifiedTimes[row]);
+        }
+    }
+
+    private void grow() {
+        int capacity = names.length + (names.length >> 1) + 1;
+        names = Arrays.copyOf(names, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        createdByIds = Arrays.copyOf(createdByIds, capacity);
+        lastModifiedByIds = Arrays.copyOf(lastModifiedByIds, capacity);
+        sizesInBytes = Arrays.copyOf(sizesInBytes, capacity);
+        createdTimes = Arrays.copyOf(createdTimes, capacity);
+        modifiedTimes = Arrays.copyOf(modifiedTimes, capacity);
+    }
+
+    private static Long box(final long value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private static long unbox(final Long value) {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    // getters
+    int size() {
+        return size;
+    }
+
+    DocumentFormatter getDocumentFormatter() {
+        return documentFormatter;
+    }
+
+    String getName(final int row) {
+        return names[row];
+    }
+
+    String getDescription(final int row) {
+        return descriptions[row];
+    }
+
+    int getCreatedById(final int row) {
+        return createdByIds[row];
+    }
+
+    int getLastModifiedById(final int row) {
+        return lastModifiedByIds[row];
+    }
+
+    String getCreatedBy(final int row) {
+        return getAuthor(createdByIds[row]);
+    }
+
+    String getLastModifiedBy(final int row) {
+        return getAuthor(lastModifiedByIds[row]);
+    }
+
+    String getAuthor(final int id) {
+        return authors.getName(id);
+    }
+
+    /**
+     * @return the id of the author, NULL_ID when no row has it
+     */
+    int getAuthorId(final String author) {
+        return authors.getId(author);
+    }
+
+    int getAuthorCount() {
+        return authors.size();
+    }
+
+    long getSizeInBytes(final int row) {
+        return sizesInBytes[row];
+    }
+
+    long getCreatedTime(final int row) {
+        return createdTimes[row];
+    }
+
+    long getModifiedTime(final int row) {
+        return modifiedTimes[row];
+    }
+
+    /**
+     * #1.2. the rank of every author id in case insensitive createdBy order, the raw name breaks ties
+     *
+     * @return rank indexed by author id, do not modify
+     */
+    int[] authorRanks() {
+        return authors.ranks();
+    }
+
+    /**
+     * the rows in report order: grouped by createdBy in case insensitive order, each group by createdTime ascending.
+     * Rows created at the same time keep their row order; missing createdTimes come first.
+     *
+     * @return a permutation of the rows
+     */
+    int[] reportOrder() {
+        // #1.1. group with a stable counting sort on the author rank
+        long start = DocumentMetrics.start();
+        int[] ranks = authorRanks();
+        int[] groupStarts = new int[ranks.length + 1];
+        for (int row = 0; row < size; row++) {
+            groupStarts[ranks[createdByIds[row]] + 1]++;
+        }
+        for (int rank = 0; rank < ranks.length; rank++) {
+            groupStarts[rank + 1] += groupStarts[rank];
+        }
+        int[] order = new int[size];
+        int[] next = Arrays.copyOf(groupStarts, ranks.length);
+        for (int row = 0; row < size; row++) {
+            order[next[ranks[createdByIds[row]]]++] = row;
+        }
+
+        DocumentMetrics.GROUPING.recordSince(start);
+
+        // #1.3. sort each group by createdTime, radix sort for the large ones
+        start = DocumentMetrics.start();
+        RadixSort radixSort = new RadixSort();
+        for (int rank = 0; rank < ranks.length; rank++) {
+            radixSort.sort(order, groupStarts[rank], groupStarts[rank + 1], createdTimes);
+        }
+        DocumentMetrics.SORTING.recordSince(start);
+        return order;
+    }
+
+    /**
+     * stable merge sort of rows[from, to) by keys[row]
+     */
+    static void mergeSort(final int[] rows, final int[] scratch, final int from, final int to, final long[] keys) {
+        if (to - from < 2) {
+            return;
+        }
+        if (to - from <= 16) {
+            // insertion sort the short ranges
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                long key = keys[row];
+                int j = i - 1;
+                while (j >= from && keys[rows[j]] > key) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(rows, scratch, from, middle, keys);
+        mergeSort(rows, scratch, middle, to, keys);
+        if (keys[rows[middle - 1]] <= keys[rows[middle]]) {
+            return;
+        }
+        System.arraycopy(rows, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && keys[scratch[left]] <= keys[scratch[right]])) {
+                rows[i] = scratch[left++];
+            } else {
+                rows[i] = scratch[right++];
+            }
+        }
+    }
+
+    StringBuilder appendBeautify(final StringBuilder stringBuilder, final int row) {
+        return Document.appendBeautify(stringBuilder, documentFormatter, names[row], descriptions[row],
+                sizesInBytes[row] != NULL_VALUE, sizesInBytes[row],
+                createdTimes[row] != NULL_VALUE, createdTimes[row],
+                modifiedTimes[row] != NULL_VALUE, modifiedTimes[row]);
+    }
+
+    /**
+     * streams the same report as Document.printDocumentsReportHelper() produces for toDocuments()
+     *
+     * @param appendable not null
+     * @throws IOException
+     */
+    void writeDocumentsReport(final Appendable appendable) throws IOException {
+        writeDocumentsReport(appendable, reportOrder());
+    }
+
+    /**
+     * streams the rows in the given order, starting a new group whenever createdBy changes
+     *
+     * @param appendable not null
+     * @param order      the rows to report, grouped by createdBy
+     * @throws IOException
+     */
+    void writeDocumentsReport(final Appendable appendable, final int[] order) throws IOException {
+        long start = DocumentMetrics.start();
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        int previousId = NULL_ID;
+        for (int row : order) {
+            int id = createdByIds[row];
+            if (id != previousId) {
+                reportWriter.writeHeader(authors.getName(id));
+                previousId = id;
+            }
+            reportWriter.writeRow(this, row);
+        }
+        reportWriter.flush();
+        DocumentMetrics.FORMATTING.recordSince(start);
+        DocumentMetrics.REPORTS.increment();
+    }
+}
@@ -0,0 +1,550 @@
+package com.oliver;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Author: Oliver
+ * <p>
+ * bulk loader for delimited (CSV, TSV, ...) UTF-8 files of documents, one per row:
+ * createdBy, name, description, size, createdTime, modifiedTime
+ * <p>
+ * e.g. Andy Andrews,Andy Zed,"All matters, A to Zed",924 k,2013-05-12,2013-05-12
+ * <p>
+ * the file is memory mapped and cut into chunks on row boundaries (quote aware, so a quoted field may hold delimiters,
+ * newlines and "" escaped quotes; a quote is only expected around a whole field), both the cutting and the parsing
+ * run in parallel on a ForkJoinPool, and the chunks are concatenated in file order.
+ * Sizes and times follow DocumentFormatter.parseSize()/parseTime(): a blank size or time is null, an invalid time is null,
+ * an invalid size makes the row bad. Bad rows are skipped and reported, they never fail the load.
+ */
+@Slf4j
+class DocumentBulkLoader {
+    // constants
+    static final long DEFAULT_CHUNK_SIZE = 32L << 20;
+    static final int MAX_BAD_ROWS_KEPT = 1000;
+    private static final int FIELD_COUNT = 6;
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final byte QUOTE = '"';
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    // settings
+    private final DocumentFormatter documentFormatter;
+    private final byte delimiter;
+    private final boolean hasHeader;
+    private final ForkJoinPool forkJoinPool;
+    private final long chunkSize;
+
+    DocumentBulkLoader(final DocumentFormatter documentFormatter) {
+        this(documentFormatter, ',', false, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param documentFormatter parses the rows and is attached to the documents
+     * @param delimiter         an ASCII field delimiter, e.g. ',' or '\t'
+     * @param hasHeader         skip the first row
+     * @param forkJoinPool      parses the chunks
+     * @param chunkSize         the approximate number of bytes parsed by one task, at most 1 gb
+     */
+    DocumentBulkLoader(final DocumentFormatter documentFormatter, final char delimiter, final boolean hasHeader,
+                       final ForkJoinPool forkJoinPool, final long chunkSize) {
+        // Validate preconditions
+        Validate.notNull(documentFormatter);
+        Validate.isTrue(delimiter < 0x80 && delimiter != QUOTE && delimiter != LF && delimiter != CR, "Invalid delimiter: %s", delimiter);
+        Validate.notNull(forkJoinPool);
+        Validate.isTrue(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE);
+
+        this.documentFormatter = documentFormatter;
+        this.delimiter = (byte) delimiter;
+        this.hasHeader = hasHeader;
+        this.forkJoinPool = forkJoinPool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param path a delimited file
+     * @return the documents in file order, each with this loader's formatter
+     * @throws IOException
+     */
+    Result<List<Document>> loadDocuments(final Path path) throws IOException {
+        List<Result<List<Document>>> chunks = load(path, () -> new DocumentsSink(documentFormatter));
+        List<Document> documents = new ArrayList<>();
+        for (Result<List<Document>> chunk : chunks) {
+            documents.addAll(chunk.data);
+        }
+        return merge(documents, chunks);
+    }
+
+    /**
+     * @param path a delimited file
+     * @return the documents in file order
+     * @throws IOException
+     */
+    Result<DocumentBatch> loadBatch(final Path path) throws IOException {
+        List<Result<DocumentBatch>> chunks = load(path, () -> new BatchSink(documentFormatter));
+        int size = 0;
+        for (Result<DocumentBatch> chunk : chunks) {
+            size += chunk.data.size();
+        }
+        DocumentBatch batch = chunks.size() == 1 ? chunks.get(0).data : new DocumentBatch(documentFormatter, size);
+        if (chunks.size() > 1) {
+            for (Result<DocumentBatch> chunk : chunks) {
+                batch.addAll(chunk.data);
+            }
+        }
+        return merge(batch, chunks);
+    }
+
+    private <T> Result<T> merge(final T data, final List<Result<T>> chunks) {
+        Result<T> result = new Result<>(data);
+        for (Result<T> chunk : chunks) {
+            result.rowCount += chunk.rowCount;
+            result.badRowCount += chunk.badRowCount;
+            for (BadRow badRow : chunk.badRows) {
+                if (result.badRows.size() < MAX_BAD_ROWS_KEPT) {
+                    result.badRows.add(badRow);
+                }
+            }
+        }
+        log.debug("merge(): {} rows, {} bad rows", result.rowCount, result.badRowCount);
+        DocumentMetrics.ROWS_INGESTED.add(result.rowCount);
+        return result;
+    }
+
+    private <T> List<Result<T>> load(final Path path, final SinkFactory<T> sinkFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = chunkBoundaries(channel);
+            log.debug("load(): {} bytes in {} chunks", channel.size(), boundaries.length - 1);
+
+            List<ForkJoinTask<Result<T>>> tasks = new ArrayList<>(boundaries.length - 1);
+            for (int chunk = 0; chunk + 1 < boundaries.length; chunk++) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[chunk], boundaries[chunk + 1] - boundaries[chunk]);
+                boolean isFirstChunk = chunk == 0;
+                tasks.add(forkJoinPool.submit(() -> new ChunkParser<>(buffer, sinkFactory.create(), isFirstChunk && hasHeader).parse()));
+            }
+
+            // rows are numbered per chunk, shift them to file wide row numbers
+            List<Result<T>> results = new ArrayList<>(tasks.size());
+            long firstRow = 1;
+            for (ForkJoinTask<Result<T>> task : tasks) {
+                Result<T> result = task.join();
+                for (BadRow badRow : result.badRows) {
+                    badRow.row += firstRow - 1;
+                }
+                firstRow += result.rowCount + result.badRowCount + result.skippedRowCount;
+                results.add(result);
+            }
+            return results;
+        }
+    }
+
+    /**
+     * cuts the file into chunks of about chunkSize bytes, every boundary just after a row end, with the quote rules of
+     * the row parser (see QuoteState), so the chunk size never changes what is loaded.
+     * <p>
+     * every span of chunkSize bytes is scanned by its own task, which can't know the quote state its first byte is in,
+     * so it runs the scanner from all of them and notes the state it ends in and its first row end for each. A pass over
+     * the spans, not the bytes, then carries the real state from span to span and picks the row end of every span.
+     *
+     * @return the offsets, starting with 0 and ending with the file size
+     */
+    private long[] chunkBoundaries(final FileChannel channel) throws IOException {
+        long size = channel.size();
+        int spanCount = (int) ((size + chunkSize - 1) / chunkSize);
+        List<ForkJoinTask<SpanScan>> tasks = new ArrayList<>(spanCount);
+        for (int span = 0; span < spanCount; span++) {
+            long from = span * chunkSize;
+            tasks.add(forkJoinPool.submit(() -> scanSpan(channel, from, Math.min(size, from + chunkSize), delimiter)));
+        }
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        int state = QuoteState.FIELD_START;
+        for (int span = 0; span < spanCount; span++) {
+            SpanScan scan = join(tasks.get(span));
+            // no row end in the span: the next row end found is the one of a later span
+            long boundary = scan.rowEnds[state];
+            if (span > 0 && boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+                boundaries.add(boundary);
+            }
+            state = scan.endStates[state];
+        }
+        if (boundaries.get(boundaries.size() - 1) < size) {
+            boundaries.add(size);
+        }
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * runs the quote scanner over [from, to) once from every state
+     */
+    private static SpanScan scanSpan(final FileChannel channel, final long from, final long to, final byte delimiter) throws IOException {
+        SpanScan scan = new SpanScan();
+        int[] states = new int[QuoteState.COUNT];
+        for (int state = 0; state < QuoteState.COUNT; state++) {
+            states[state] = state;
+        }
+        Arrays.fill(scan.rowEnds, -1);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        for (int i = 0, limit = buffer.limit(); i < limit; i++) {
+            int byteClass = QuoteState.classOf(buffer.get(i), delimiter);
+            for (int start = 0; start < QuoteState.COUNT; start++) {
+                int state = states[start];
+                if (scan.rowEnds[start] < 0 && QuoteState.isRowEnd(state, byteClass)) {
+                    scan.rowEnds[start] = from + i + 1;
+                }
+                states[start] = QuoteState.next(state, byteClass);
+            }
+        }
+        scan.endStates = states;
+        return scan;
+    }
+
+    private static SpanScan join(final ForkJoinTask<SpanScan> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while cutting the file into chunks");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * what one span of the file does to every quote state: the state it ends in, and its first row end, -1 for none
+     */
+    private static final class SpanScan {
+        private int[] endStates;
+        private final long[] rowEnds = new long[QuoteState.COUNT];
+    }
+
+    /**
+     * the quote rules of the row parser as a state machine, shared by the chunk cutter and the bad row skipping:
+     * a quote opens a quoted field only at the start of a field, "" inside one is a quote, and anywhere else a quote is
+     * a plain character. A row ends at a newline outside quotes.
+     */
+    static final class QuoteState {
+        // states
+        static final int FIELD_START = 0;
+        static final int PLAIN = 1;
+        static final int QUOTED = 2;
+        // a quote inside a quoted field, either its end or the first half of ""
+        static final int QUOTE_IN_QUOTED = 3;
+        static final int COUNT = 4;
+        // byte classes
+        private static final int QUOTE_BYTE = 0;
+        private static final int DELIMITER_BYTE = 1;
+        private static final int LF_BYTE = 2;
+        private static final int OTHER_BYTE = 3;
+        // next state by [state][byte class]
+        private static final int[][] NEXT = {
+                {QUOTED, FIELD_START, FIELD_START, PLAIN},
+                {PLAIN, FIELD_START, FIELD_START, PLAIN},
+                {QUOTE_IN_QUOTED, QUOTED, QUOTED, QUOTED},
+                {QUOTED, FIELD_START, FIELD_START, PLAIN},
+        };
+
+        private QuoteState() {
+        }
+
+        static int classOf(final byte b, final byte delimiter) {
+            return b == QUOTE ? QUOTE_BYTE : b == delimiter ? DELIMITER_BYTE : b == LF ? LF_BYTE : OTHER_BYTE;
+        }
+
+        static int next(final int state, final int byteClass) {
+            return NEXT[state][byteClass];
+        }
+
+        static boolean isRowEnd(final int state, final int byteClass) {
+            return byteClass == LF_BYTE && state != QUOTED;
+        }
+    }
+
+    /**
+     * outcome of a load
+     */
+    @Getter
+    static class Result<T> {
+        private T data;
+        private long rowCount;
+        private long badRowCount;
+        private long skippedRowCount;
+        // the first MAX_BAD_ROWS_KEPT bad rows
+        private final List<BadRow> badRows = new ArrayList<>();
+
+        Result(final T data) {
+            this.data = data;
+        }
+    }
+
+    /**
+     * a row that was skipped, row numbers count every row of the file from 1, the header included
+     */
+    @Getter
+    static class BadRow {
+        private long row;
+        private final String reason;
+
+        BadRow(final long row, final String reason) {
+            this.row = row;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + row + ": " + reason;
+        }
+    }
+
+    private interface SinkFactory<T> {
+        Sink<T> create();
+    }
+
+    private interface Sink<T> {
+        void accept(String createdBy, String name, String description, long sizeInBytes, long createdTime, long modifiedTime);
+
+        T result();
+    }
+
+    private static class DocumentsSink implements Sink<List<Document>> {
+        private final DocumentFormatter documentFormatter;
+        private final List<Document> documents = new ArrayList<>();
+
+        DocumentsSink(final DocumentFormatter documentFormatter) {
+            this.documentFormatter = documentFormatter;
+        }
+
+        @Override
+        public void accept(final String createdBy, final String name, final String description, final long sizeInBytes, final long createdTime, final long modifiedTime) {
+            Document document = new Document(createdBy, name, description, box(sizeInBytes), box(createdTime), box(modifiedTime));
+            document.documentFormatter = documentFormatter;
+            documents.add(document);
+        }
+
+        @Override
+        public List<Document> result() {
+            return documents;
+        }
+
+        private static Long box(final long value) {
+            return value == DocumentBatch.NULL_VALUE ? null : value;
+        }
+    }
+
+    private static class BatchSink implements Sink<DocumentBatch> {
+        private final DocumentBatch batch;
+
+        BatchSink(final DocumentFormatter documentFormatter) {
+            this.batch = new DocumentBatch(documentFormatter);
+        }
+
+        @Override
+        public void accept(final String createdBy, final String name, final String description, final long sizeInBytes, final long createdTime, final long modifiedTime) {
+            batch.add(createdBy, name, description, null, sizeInBytes, createdTime, modifiedTime);
+        }
+
+        @Override
+        public DocumentBatch result() {
+            return batch;
+        }
+    }
+
+    /**
+     * parses the rows of one chunk, the chunk starts at the start of a row and ends at the end of one
+     */
+    private class ChunkParser<T> {
+        private final MappedByteBuffer buffer;
+        private final Sink<T> sink;
+        private final boolean isSkippingHeader;
+        private final int limit;
+        private int position;
+        // fields of the current row
+        private final String[] fields = new String[FIELD_COUNT];
+        private int fieldCount;
+        private String error;
+        private byte[] scratch = new byte[256];
+
+        ChunkParser(final MappedByteBuffer buffer, final Sink<T> sink, final boolean isSkippingHeader) {
+            this.buffer = buffer;
+            this.sink = sink;
+            this.isSkippingHeader = isSkippingHeader;
+            this.limit = buffer.limit();
+        }
+
+        Result<T> parse() {
+            Result<T> result = new Result<>(null);
+            long row = 0;
+            while (position < limit) {
+                row++;
+                boolean isBlank = parseRow();
+                if (row == 1 && isSkippingHeader) {
+                    result.skippedRowCount++;
+                } else if (isBlank) {
+                    result.skippedRowCount++;
+                } else if (error == null && fieldCount != FIELD_COUNT) {
+                    bad(result, row, "expected " + FIELD_COUNT + " fields but found " + fieldCount);
+                } else if (error != null) {
+                    bad(result, row, error);
+                } else {
+                    accept(result, row);
+                }
+            }
+            result.data = sink.result();
+            return result;
+        }
+
+        private void accept(final Result<T> result, final long row) {
+            String createdBy = fields[0];
+            if (createdBy.isEmpty()) {
+                bad(result, row, "missing createdBy");
+                return;
+            }
+            long sizeInBytes = DocumentBatch.NULL_VALUE;
+            if (!StringUtils.isBlank(fields[3])) {
+                sizeInBytes = DocumentFormatter.parseSize(fields[3], 0, fields[3].length());
+                if (sizeInBytes == DocumentFormatter.INVALID_SIZE) {
+                    bad(result, row, "invalid size: " + fields[3]);
+                    return;
+                }
+            }
+            Long createdTime = documentFormatter.parseTime(fields[4]);
+            Long modifiedTime = documentFormatter.parseTime(fields[5]);
+            sink.accept(createdBy, fields[1], fields[2], sizeInBytes,
+                    createdTime == null ? DocumentBatch.NULL_VALUE : createdTime, modifiedTime == null ? DocumentBatch.NULL_VALUE : modifiedTime);
+            result.rowCount++;
+        }
+
+        private void bad(final Result<T> result, final long row, final String reason) {
+            result.badRowCount++;
+            if (result.badRows.size() < MAX_BAD_ROWS_KEPT) {
+                result.badRows.add(new BadRow(row, reason));
+            }
+        }
+
+        /**
+         * reads one row into fields, up to and including its newline
+         *
+         * @return true for an empty line
+         */
+        private boolean parseRow() {
+            fieldCount = 0;
+            error = null;
+            if (isEndOfRow(position)) {
+                skipNewline();
+                return true;
+            }
+            while (true) {
+                String field = buffer.get(position) == QUOTE ? parseQuotedField() : parsePlainField();
+                if (fieldCount < FIELD_COUNT) {
+                    fields[fieldCount] = field;
+                }
+                fieldCount++;
+                if (error != null) {
+                    skipToNextRow();
+                    return false;
+                }
+                if (position < limit && buffer.get(position) == delimiter) {
+                    position++;
+                    continue;
+                }
+                skipNewline();
+                return false;
+            }
+        }
+
+        private String parsePlainField() {
+            int start = position;
+            while (position < limit && buffer.get(position) != delimiter && !isEndOfRow(position)) {
+                position++;
+            }
+            return decode(start, position);
+        }
+
+        private String parseQuotedField() {
+            // skip the opening quote, "" inside stands for one quote
+            position++;
+            int length = 0;
+            while (true) {
+                if (position >= limit) {
+                    error = "unterminated quoted field";
+                    return null;
+                }
+                byte b = buffer.get(position++);
+                if (b == QUOTE) {
+                    if (position < limit && buffer.get(position) == QUOTE) {
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+                if (length == scratch.length) {
+                    scratch = Arrays.copyOf(scratch, length * 2);
+                }
+                scratch[length++] = b;
+            }
+            if (position < limit && buffer.get(position) != delimiter && !isEndOfRow(position)) {
+                error = "unexpected character after a closing quote";
+                return null;
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private String decode(final int start, final int end) {
+            int length = end - start;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = buffer.get(start + i);
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private boolean isEndOfRow(final int at) {
+            if (at >= limit) {
+                return true;
+            }
+            byte b = buffer.get(at);
+            return b == LF || (b == CR && (at + 1 >= limit || buffer.get(at + 1) == LF));
+        }
+
+        private void skipNewline() {
+            if (position < limit && buffer.get(position) == CR) {
+                position++;
+            }
+            if (position < limit && buffer.get(position) == LF) {
+                position++;
+            }
+        }
+
+        private void skipToNextRow() {
+            // a bad row ends at the next row end, the errors all stop mid field
+            int state = QuoteState.PLAIN;
+            while (position < limit) {
+                int byteClass = QuoteState.classOf(buffer.get(position++), delimiter);
+                if (QuoteState.isRowEnd(state, byteClass)) {
+                    return;
+                }
+                state = QuoteState.next(state, byteClass);
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.oliver;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * drops repeated documents before grouping, e.g. the rows upstream retries send again.
+ * <p>
+ * two documents are duplicates when the fields of the key are equal; the default key is (createdBy, name, createdTime,
+ * sizeInBytes). Every document is reduced to a 64 bit fingerprint of its key fields, with no boxing and no
+ * Document.equals()/hashCode() (which also compare the formatter), and the first document of every fingerprint is kept.
+ * <p>
+ * exact mode keeps the fingerprints in a primitive open addressing hash set, so memory grows with the distinct rows
+ * (16 to 32 bytes each); two different keys share a fingerprint with a chance of about n^2 / 2^65. Bounded mode keeps
+ * a Bloom filter of fixed size instead, for endless streams: it never keeps a duplicate, but drops about
+ * falsePositiveRate of the unique rows once expectedInsertions rows went through. Not thread safe.
+ */
+@Slf4j
+class DocumentDeduplicator {
+    // the default key: the fields an upstream retry sends again unchanged
+    static final Set<KeyField> DEFAULT_KEY = Collections.unmodifiableSet(EnumSet.of(KeyField.CREATED_BY, KeyField.NAME,
+            KeyField.CREATED_TIME, KeyField.SIZE_IN_BYTES));
+    // settings
+    @Getter
+    private final Set<KeyField> key;
+    private final KeyField[] keyFields;
+    // one of the two is null
+    private final LongHashSet fingerprints;
+    private final BloomFilter bloomFilter;
+    // counts
+    @Getter
+    private long keptCount;
+    @Getter
+    private long droppedCount;
+
+    enum KeyField {
+        CREATED_BY, NAME, DESCRIPTION, LAST_MODIFIED_BY, SIZE_IN_BYTES, CREATED_TIME, MODIFIED_TIME
+    }
+
+    DocumentDeduplicator() {
+        this(DEFAULT_KEY);
+    }
+
+    /**
+     * exact mode
+     *
+     * @param key the fields two duplicates share, at least one
+     */
+    DocumentDeduplicator(final Set<KeyField> key) {
+        this(key, new LongHashSet(), null);
+    }
+
+    private DocumentDeduplicator(final Set<KeyField> key, final LongHashSet fingerprints, final BloomFilter bloomFilter) {
+        // Validate preconditions
+        Validate.notEmpty(key);
+        Validate.noNullElements(key);
+
+        this.key = Collections.unmodifiableSet(EnumSet.copyOf(key));
+        this.keyFields = this.key.toArray(new KeyField[0]);
+        this.fingerprints = fingerprints;
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * bounded mode, for streaming input of unknown size
+     *
+     * @param expectedInsertions the distinct rows the filter is sized for
+     * @param falsePositiveRate  the share of unique rows dropped at expectedInsertions, e.g. 0.001
+     */
+    static DocumentDeduplicator bounded(final Set<KeyField> key, final long expectedInsertions, final double falsePositiveRate) {
+        return new DocumentDeduplicator(key, null, new BloomFilter(expectedInsertions, falsePositiveRate));
+    }
+
+    /**
+     * @return true to keep the document (the first of its key), false for a duplicate
+     */
+    boolean add(final Document document) {
+        long fingerprint = fingerprint(document);
+        boolean isNew = fingerprints != null ? fingerprints.add(fingerprint) : bloomFilter.add(fingerprint);
+        if (isNew) {
+            keptCount++;
+        } else {
+            droppedCount++;
+            DocumentMetrics.DUPLICATES_DROPPED.increment();
+        }
+        return isNew;
+    }
+
+    /**
+     * @return the first document of every key, in input order
+     */
+    List<Document> deduplicate(final Collection<Document> documents) {
+        List<Document> kept = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            if (add(document)) {
+                kept.add(document);
+            }
+        }
+        log.debug("deduplicate(): kept {} of {}", kept.size(), documents.size());
+        return kept;
+    }
+
+    /**
+     * the streaming stage: a lazy view of documents without the duplicates, e.g. for ExternalDocumentSorter
+     */
+    Iterator<Document> deduplicate(final Iterator<Document> documents) {
+        return new Iterator<Document>() {
+            private Document next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && documents.hasNext()) {
+                    Document document = documents.next();
+                    if (add(document)) {
+                        next = document;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Document next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Document document = next;
+                next = null;
+                return document;
+            }
+        };
+    }
+
+    /**
+     * FNV-1a over the key fields, every field tagged with its ordinal and null or length, then a splitmix64 finalizer
+     */
+    long fingerprint(final Document document) {
+        long hash = 0xcbf29ce484222325L;
+        for (KeyField field : keyFields) {
+            hash = mix(hash, field.ordinal());
+            switch (field) {
+                case CREATED_BY:
+                    hash = mix(hash, document.createdBy);
+                    break;
+                case NAME:
+                    hash = mix(hash, document.name);
+                    break;
+                case DESCRIPTION:
+                    hash = mix(hash, document.description);
+                    break;
+                case LAST_MODIFIED_BY:
+                    hash = mix(hash, document.lastModifiedBy);
+                    break;
+                case SIZE_IN_BYTES:
+                    hash = mix(hash, document.sizeInBytes);
+                    break;
+                case CREATED_TIME:
+                    hash = mix(hash, document.createdTime);
+                    break;
+                default:
+                    hash = mix(hash, document.modifiedTime);
+            }
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static long mix(final long hash, final long value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    private static long mix(long hash, final String value) {
+        if (value == null) {
+            return mix(hash, -1);
+        }
+        hash = mix(hash, value.length());
+        for (int i = 0; i < value.length(); i++) {
+            hash = mix(hash, value.charAt(i));
+        }
+        return hash;
+    }
+
+    private static long mix(final long hash, final Long value) {
+        return value == null ? mix(hash, -1) : mix(mix(hash, 1), value.longValue());
+    }
+
+    /**
+     * open addressing set of longs, linear probing, at most half full; 0 marks an empty slot, so 0 itself is a flag
+     */
+    static final class LongHashSet {
+        private long[] slots = new long[64];
+        private boolean hasZero;
+        private int size;
+
+        /**
+         * @return true when the value was not in the set yet
+         */
+        boolean add(final long value) {
+            if (value == 0) {
+                if (hasZero) {
+                    return false;
+                }
+                hasZero = true;
+                size++;
+                return true;
+            }
+            int mask = slots.length - 1;
+            int slot = slotOf(value, mask);
+            while (slots[slot] != 0) {
+                if (slots[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = value;
+            if (++size > slots.length >>> 1) {
+                grow();
+            }
+            return true;
+        }
+
+        boolean contains(final long value) {
+            if (value == 0) {
+                return hasZero;
+            }
+            int mask = slots.length - 1;
+            int slot = slotOf(value, mask);
+            while (slots[slot] != 0) {
+                if (slots[slot] == value) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // the fingerprints are well mixed already, the other callers get their high bits folded in
+        private static int slotOf(final long value, final int mask) {
+            return (int) (value ^ (value >>> 32)) & mask;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            int mask = slots.length - 1;
+            for (long value : old) {
+                if (value != 0) {
+                    int slot = slotOf(value, mask);
+                    while (slots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * fixed size Bloom filter on fingerprints, the k probes derived from the two halves of the fingerprint
+     */
+    static final class BloomFilter {
+        private final long[] bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(final long expectedInsertions, final double falsePositiveRate) {
+            // Validate preconditions
+            Validate.isTrue(expectedInsertions > 0);
+            Validate.isTrue(0 < falsePositiveRate && falsePositiveRate < 1);
+
+            // m = -n ln p / (ln 2)^2, k = m / n ln 2
+            long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            Validate.isTrue(optimalBits <= (long) Integer.MAX_VALUE * Long.SIZE, "Bloom filter too large: %d bits", optimalBits);
+            this.bits = new long[(int) ((optimalBits + Long.SIZE - 1) / Long.SIZE)];
+            this.bitCount = (long) bits.length * Long.SIZE;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        /**
+         * @return true when some bit was not set yet, i.e. the fingerprint was surely not added before
+         */
+        boolean add(final long fingerprint) {
+            int hash1 = (int) fingerprint;
+            int hash2 = (int) (fingerprint >>> 32);
+            boolean isNew = false;
+            for (int i = 1; i <= hashCount; i++) {
+                long combined = (hash1 + (long) i * hash2) & Long.MAX_VALUE;
+                long bit = combined % bitCount;
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                if ((bits[word] & mask) == 0) {
+                    bits[word] |= mask;
+                    isNew = true;
+                }
+            }
+            return isNew;
+        }
+
+        long getBitCount() {
+            return bitCount;
+        }
+    }
+}
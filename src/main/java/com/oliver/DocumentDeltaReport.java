@@ -0,0 +1,375 @@
+package com.oliver;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * what changed between two snapshots of the documents, per author, without diffing report text.
+ * <p>
+ * a document is identified by (createdBy, createdTime, name); two documents with the same identity are the same document,
+ * modified when its description, size, modifiedTime or lastModifiedBy differ. Both sides are read in report order, so
+ * one merge join over the two sorted streams finds every change: O(before + after), plus sorting the names of documents
+ * created at the same time by the same author. Identical duplicates pair up in order. A stored snapshot is compared on
+ * its columns, without a Document per row.
+ * <p>
+ * Output format (only the authors with changes, in report order; within an author by createdTime, then name):
+ * "+ " added, "- " removed, "~ " a modified document before and "> " after the change
+ * Andy Andrews
+ * - Document{'Andy Zed','Last_WORD TOO_Long_BUT_Don't_Chop_keep_it_whole_right?...',924 k,1300-01-01,1300-01-01}
+ * + Document{'Andy Sauce','SHORT_NO_TRUNCATION',87 gb,1501-01-01,1501-01-01}
+ * Boy
+ * ~ Document{'Boy Sauce','SHORT_NO_TRUNCATION',87 gb,1300-01-01,1300-01-01}
+ * > Document{'Boy Sauce','SHORT_NO_TRUNCATION',90 gb,1300-01-01,1300-01-02}
+ */
+@Slf4j
+class DocumentDeltaReport {
+    // constants
+    static final String ADDED = "+ ";
+    static final String REMOVED = "- ";
+    static final String BEFORE = "~ ";
+    static final String AFTER = "> ";
+    private static final Comparator<String> NAME_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    // counts
+    @Getter
+    private long addedCount;
+    @Getter
+    private long removedCount;
+    @Getter
+    private long modifiedCount;
+    @Getter
+    private long unchangedCount;
+    // output
+    private final DocumentReportWriter reportWriter;
+    private String writtenKey;
+
+    private DocumentDeltaReport(final Appendable appendable) {
+        this.reportWriter = new DocumentReportWriter(appendable);
+    }
+
+    /**
+     * @param before     the older snapshot, every createdBy not null
+     * @param after      the newer snapshot, every createdBy not null
+     * @param appendable receives the delta
+     * @return the counts of the delta
+     * @throws IOException
+     */
+    static DocumentDeltaReport writeDelta(final Collection<Document> before, final Collection<Document> after,
+                                          final Appendable appendable) throws IOException {
+        // Validate preconditions
+        Validate.notNull(before);
+        Validate.notNull(after);
+        Validate.notNull(appendable);
+
+        return merge(inReportOrder(before), inReportOrder(after), appendable);
+    }
+
+    /**
+     * the same delta between two stored snapshots, read row by row; the rows of a store are already in report order
+     */
+    static DocumentDeltaReport writeDelta(final DocumentStore before, final DocumentStore after,
+                                          final Appendable appendable) throws IOException {
+        // Validate preconditions
+        Validate.notNull(before);
+        Validate.notNull(after);
+        Validate.notNull(appendable);
+
+        return merge(rowsOf(before), rowsOf(after), appendable);
+    }
+
+    static StringBuilder printDeltaHelper(final Collection<Document> before, final Collection<Document> after) {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeDelta(before, after, stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+
+    private static Rows inReportOrder(final Collection<Document> documents) {
+        List<Document> rows = new ArrayList<>(documents.size());
+        for (List<Document> group : Document.groupDocuments(documents).values()) {
+            rows.addAll(group);
+        }
+        return new DocumentRows(rows);
+    }
+
+    private static Rows rowsOf(final DocumentStore store) {
+        return new StoreRows(store);
+    }
+
+    /**
+     * the merge join, both sides ordered by createdBy then createdTime; an author is case folded once per run of its
+     * rows, not once per comparison
+     */
+    private static DocumentDeltaReport merge(final Rows before, final Rows after, final Appendable appendable) throws IOException {
+        DocumentDeltaReport delta = new DocumentDeltaReport(appendable);
+        int beforeSize = before.size();
+        int afterSize = after.size();
+        String beforeKey = null;
+        String beforeFoldedKey = null;
+        String afterKey = null;
+        String afterFoldedKey = null;
+        int b = 0;
+        int a = 0;
+        while (b < beforeSize || a < afterSize) {
+            if (b < beforeSize && !before.getCreatedBy(b).equals(beforeKey)) {
+                beforeKey = before.getCreatedBy(b);
+                beforeFoldedKey = beforeKey.toLowerCase();
+            }
+            if (a < afterSize && !after.getCreatedBy(a).equals(afterKey)) {
+                afterKey = after.getCreatedBy(a);
+                afterFoldedKey = afterKey.toLowerCase();
+            }
+            int result = b == beforeSize ? 1 : a == afterSize ? -1
+                    : compareRun(beforeKey, beforeFoldedKey, before.getCreatedTime(b), afterKey, afterFoldedKey, after.getCreatedTime(a));
+            if (result < 0) {
+                delta.write(REMOVED, before, b++);
+                delta.removedCount++;
+            } else if (result > 0) {
+                delta.write(ADDED, after, a++);
+                delta.addedCount++;
+            } else {
+                // the same author and createdTime on both sides: match the whole run by name
+                long createdTime = before.getCreatedTime(b);
+                int beforeEnd = endOfRun(before, b, beforeKey, createdTime);
+                int afterEnd = endOfRun(after, a, afterKey, createdTime);
+                delta.mergeRun(before, b, beforeEnd, after, a, afterEnd);
+                b = beforeEnd;
+                a = afterEnd;
+            }
+        }
+        delta.reportWriter.flush();
+        log.debug("merge(): {} added, {} removed, {} modified, {} unchanged", delta.addedCount, delta.removedCount,
+                delta.modifiedCount, delta.unchangedCount);
+        return delta;
+    }
+
+    private static int endOfRun(final Rows rows, final int from, final String key, final long createdTime) {
+        int end = from + 1;
+        while (end < rows.size() && rows.getCreatedTime(end) == createdTime && rows.getCreatedBy(end).equals(key)) {
+            end++;
+        }
+        return end;
+    }
+
+    private void mergeRun(final Rows before, final int beforeFrom, final int beforeTo,
+                          final Rows after, final int afterFrom, final int afterTo) throws IOException {
+        int[] beforeRun = byName(before, beforeFrom, beforeTo);
+        int[] afterRun = byName(after, afterFrom, afterTo);
+        int b = 0;
+        int a = 0;
+        while (b < beforeRun.length || a < afterRun.length) {
+            int result = b == beforeRun.length ? 1 : a == afterRun.length ? -1
+                    : NAME_ORDER.compare(before.getName(beforeRun[b]), after.getName(afterRun[a]));
+            if (result < 0) {
+                write(REMOVED, before, beforeRun[b++]);
+                removedCount++;
+            } else if (result > 0) {
+                write(ADDED, after, afterRun[a++]);
+                addedCount++;
+            } else if (isModified(before, beforeRun[b], after, afterRun[a])) {
+                write(BEFORE, before, beforeRun[b++]);
+                write(AFTER, after, afterRun[a++]);
+                modifiedCount++;
+            } else {
+                b++;
+                a++;
+                unchangedCount++;
+            }
+        }
+    }
+
+    /**
+     * the rows of a run sorted by name, stable so identical duplicates pair up in order
+     */
+    private static int[] byName(final Rows rows, final int from, final int to) {
+        if (to - from == 1) {
+            return new int[]{from};
+        }
+        Integer[] run = new Integer[to - from];
+        String[] names = new String[run.length];
+        for (int i = 0; i < run.length; i++) {
+            run[i] = i;
+            names[i] = rows.getName(from + i);
+        }
+        Arrays.sort(run, (i1, i2) -> NAME_ORDER.compare(names[i1], names[i2]));
+        int[] sorted = new int[run.length];
+        for (int i = 0; i < run.length; i++) {
+            sorted[i] = from + run[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * by createdBy in report order, then createdTime, a missing createdTime first
+     */
+    private static int compareRun(final String key1, final String foldedKey1, final long createdTime1,
+                                  final String key2, final String foldedKey2, final long createdTime2) {
+        if (!key1.equals(key2)) {
+            int result = foldedKey1.compareTo(foldedKey2);
+            return result != 0 ? result : key1.compareTo(key2);
+        }
+        return Long.compare(createdTime1, createdTime2);
+    }
+
+    private static boolean isModified(final Rows before, final int beforeRow, final Rows after, final int afterRow) {
+        return before.getSizeInBytes(beforeRow) != after.getSizeInBytes(afterRow)
+                || before.getModifiedTime(beforeRow) != after.getModifiedTime(afterRow)
+                || !Objects.equals(before.getDescription(beforeRow), after.getDescription(afterRow))
+                || !Objects.equals(before.getLastModifiedBy(beforeRow), after.getLastModifiedBy(afterRow));
+    }
+
+    private void write(final String marker, final Rows rows, final int row) throws IOException {
+        String key = rows.getCreatedBy(row);
+        if (!key.equals(writtenKey)) {
+            writtenKey = key;
+            reportWriter.writeHeader(writtenKey);
+        }
+        rows.writeRow(reportWriter, marker, row);
+    }
+
+    /**
+     * one side of the delta, read by row in report order; missing longs are DocumentBatch.NULL_VALUE
+     */
+    private interface Rows {
+        int size();
+
+        String getCreatedBy(int row);
+
+        long getCreatedTime(int row);
+
+        String getName(int row);
+
+        String getDescription(int row);
+
+        long getSizeInBytes(int row);
+
+        long getModifiedTime(int row);
+
+        String getLastModifiedBy(int row);
+
+        void writeRow(DocumentReportWriter reportWriter, String marker, int row) throws IOException;
+    }
+
+    private static final class DocumentRows implements Rows {
+        private final List<Document> documents;
+
+        private DocumentRows(final List<Document> documents) {
+            this.documents = documents;
+        }
+
+        private static long unbox(final Long value) {
+            return value == null ? DocumentBatch.NULL_VALUE : value;
+        }
+
+        @Override
+        public int size() {
+            return documents.size();
+        }
+
+        @Override
+        public String getCreatedBy(final int row) {
+            return documents.get(row).createdBy;
+        }
+
+        @Override
+        public long getCreatedTime(final int row) {
+            return unbox(documents.get(row).createdTime);
+        }
+
+        @Override
+        public String getName(final int row) {
+            return documents.get(row).name;
+        }
+
+        @Override
+        public String getDescription(final int row) {
+            return documents.get(row).description;
+        }
+
+        @Override
+        public long getSizeInBytes(final int row) {
+            return unbox(documents.get(row).sizeInBytes);
+        }
+
+        @Override
+        public long getModifiedTime(final int row) {
+            return unbox(documents.get(row).modifiedTime);
+        }
+
+        @Override
+        public String getLastModifiedBy(final int row) {
+            return documents.get(row).lastModifiedBy;
+        }
+
+        @Override
+        public void writeRow(final DocumentReportWriter reportWriter, final String marker, final int row) throws IOException {
+            reportWriter.writeRow(marker, documents.get(row));
+        }
+    }
+
+    /**
+     * the columns of a store, no Document per row
+     */
+    private static final class StoreRows implements Rows {
+        private final DocumentStore store;
+
+        private StoreRows(final DocumentStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public String getCreatedBy(final int row) {
+            return store.getCreatedBy(row);
+        }
+
+        @Override
+        public long getCreatedTime(final int row) {
+            return store.getCreatedTime(row);
+        }
+
+        @Override
+        public String getName(final int row) {
+            return store.getName(row);
+        }
+
+        @Override
+        public String getDescription(final int row) {
+            return store.getDescription(row);
+        }
+
+        @Override
+        public long getSizeInBytes(final int row) {
+            return store.getSizeInBytes(row);
+        }
+
+        @Override
+        public long getModifiedTime(final int row) {
+            return store.getModifiedTime(row);
+        }
+
+        @Override
+        public String getLastModifiedBy(final int row) {
+            return store.getLastModifiedBy(row);
+        }
+
+        @Override
+        public void writeRow(final DocumentReportWriter reportWriter, final String marker, final int row) throws IOException {
+            reportWriter.writeRow(marker, store, row);
+        }
+    }
+}
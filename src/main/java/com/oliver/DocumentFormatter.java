@@ -4,7 +4,6 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.text.SimpleDateFormat;
 import java.time.*;
@@ -24,31 +23,33 @@ class DocumentFormatter {
     // constants
     private static final String DEFAULT_YYYYMMDD_PATTERN = "yyyy-MM-dd";
     private static final String DEFAULT_ZoneId_TORONTO = "America/Toronto";
+    private static final int ISO_DATE_LENGTH = 10;
+    static final long INVALID_EPOCH_DAY = Long.MIN_VALUE;
+    private static final long DAYS_0000_TO_1970 = 719468L;
+    private static final long DAYS_PER_400_YEARS = 146097L;
     // timeZoneSettings etc.
     private DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(DEFAULT_YYYYMMDD_PATTERN, Locale.CANADA);
     private ZoneId zoneId = ZoneId.of(DEFAULT_ZoneId_TORONTO);
+    // false once a custom DateTimeFormatter is given, then formatDate() can't render the digits itself
+    private boolean isDefaultPattern = true;
+    // rendered days of zoneId, used with the default pattern
+    private ZoneDayCache dayCache = new ZoneDayCache(zoneId);
     //    private ZoneOffset zoneOffsetToronto = ZoneOffset.of(DEFAULT_ZoneOffset_TORONTO);
-    private static Map<String, Long> map4ParsingSize = new HashMap<>();
-
-    static {
-        map4ParsingSize.put(Sizes.bytes.toString(), 1L);
-        map4ParsingSize.put(Sizes.k.toString(), 1024L);
-        map4ParsingSize.put(Sizes.mb.toString(), 1048576L);
-        map4ParsingSize.put(Sizes.gb.toString(), 1073741824L);
-        map4ParsingSize.put(Sizes.tb.toString(), 1099511627776L);
-        map4ParsingSize.put(Sizes.pb.toString(), 1125899906842624L);
-//        map4ParsingSize.put(Sizes.eb.toString(), 1152921504606846976L);
-//        map4ParsingSize.put(Sizes.zb.toString(), 1180591620717411303424L);
-//        map4ParsingSize.put(Sizes.yb.toString(), 1208925819614629174706176L);
-    }
+    // parseSize() results
+    static final long INVALID_SIZE = Long.MIN_VALUE;
+    // 18 fraction digits, any further digit can't add a whole byte, even to a pb
+    private static final long MAX_FRACTION_SCALE = 1_000_000_000_000_000_000L;
 
     public DocumentFormatter(ZoneId zoneId) {
         this.zoneId = zoneId;
+        this.dayCache = new ZoneDayCache(zoneId);
     }
 
     public DocumentFormatter(final DateTimeFormatter dateTimeFormatter, final ZoneId zoneId) {
         this.dateTimeFormatter = dateTimeFormatter;
         this.zoneId = zoneId;
+        this.isDefaultPattern = false;
+        this.dayCache = new ZoneDayCache(zoneId);
     }
 
     private Long parseTime(final String dateTimeString, final DateTimeFormatter formatter, final ZoneOffset zoneOffset) {
@@ -64,27 +65,108 @@ class DocumentFormatter {
         }
     }
 
+    /**
+     * parses yyyy-MM-dd to the epoch milli of its local midnight in zoneId
+     * <p>
+     * the common 10 char form is parsed by hand with no exception on bad input, and its midnight comes from the
+     * memoized day starts of the zone; anything longer (e.g. +10000-01-01) goes through LocalDate.parse()
+     *
+     * @param dateTimeString e.g. 2013-05-09
+     * @return null when blank or not a valid ISO local date
+     */
     Long parseTime(final String dateTimeString) {
         // Validate preconditions
         if (StringUtils.isBlank(dateTimeString)) {
             return null;
         }
 
+        int length = dateTimeString.length();
+        if (length < ISO_DATE_LENGTH) {
+            // even the shortest ISO local date is yyyy-MM-dd
+            DocumentMetrics.PARSE_TIME_FAILURES.increment();
+            return null;
+        }
+        if (length == ISO_DATE_LENGTH) {
+            long epochDay = parseEpochDay(dateTimeString);
+            if (epochDay == INVALID_EPOCH_DAY) {
+                DocumentMetrics.PARSE_TIME_FAILURES.increment();
+                return null;
+            }
+            return dayCache.startOfDay(epochDay);
+        }
+
         try {
             LocalDate date = LocalDate.parse(dateTimeString);
             LocalDateTime localDateTime = LocalDateTime.of(date, LocalTime.MIN);
             ZonedDateTime zonedDateTime = localDateTime.atZone(zoneId);
             return zonedDateTime.toInstant().toEpochMilli();
         } catch (Exception e) {
+            DocumentMetrics.PARSE_TIME_FAILURES.increment();
             return null;
         }
     }
 
+    /**
+     * parses exactly yyyy-MM-dd (proleptic ISO calendar, years 0000..9999) without allocating or throwing
+     *
+     * @param text 10 chars
+     * @return days since 1970-01-01, INVALID_EPOCH_DAY when the text isn't a valid date
+     */
+    static long parseEpochDay(final CharSequence text) {
+        if (text.length() != ISO_DATE_LENGTH || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID_EPOCH_DAY;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID_EPOCH_DAY;
+        }
+
+        // days from civil, see http://howardhinnant.github.io/date_algorithms.html
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_400_YEARS + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * @return the decimal value of text[from, to), -1 when any char isn't an ASCII digit
+     */
+    private static int digits(final CharSequence text, final int from, final int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
     /**
      * parse String represented size 2 long represented in the unit of Byte.
      *
-     * @param size
-     * @return
+     * @param size e.g. 233 mb, see parseSize(CharSequence, int, int)
+     * @return null when blank
+     * @throws IllegalArgumentException when not blank and not a size
      */
     static Long parseSize(final String size) {
         // Validate preconditions
@@ -92,30 +174,148 @@ class DocumentFormatter {
             return null;
         }
 
-        String[] s = size.trim().split(" ");
-        Validate.isTrue(s.length == 2);
-        Long resultLong = Long.valueOf(s[0]) * map4ParsingSize.get(s[1]);
-        Validate.notNull(resultLong);
+        long resultLong = parseSize(size, 0, size.length());
+        Validate.isTrue(resultLong != INVALID_SIZE, "Invalid size: %s", size);
         return resultLong;
     }
 
+    static long parseSize(final CharSequence size) {
+        return parseSize(size, 0, size.length());
+    }
+
+    /**
+     * single pass, table driven size parser that never throws on bad input.
+     * <p>
+     * accepts a non negative decimal number and one of the EnumUtils.Sizes units in any case, with optional whitespace around
+     * and between them, e.g. "423 bytes", "1.5 GB", " 924k ". The fraction is resolved exactly and rounded down to whole bytes.
+     *
+     * @param size  the chars to parse
+     * @param start first char, inclusive
+     * @param end   last char, exclusive
+     * @return the size in bytes, INVALID_SIZE when the range isn't a size or the size overflows a long
+     */
+    static long parseSize(final CharSequence size, final int start, final int end) {
+        long bytes = parseSizeRange(size, start, end);
+        if (bytes == INVALID_SIZE) {
+            DocumentMetrics.PARSE_SIZE_FAILURES.increment();
+        }
+        return bytes;
+    }
+
+    private static long parseSizeRange(final CharSequence size, final int start, final int end) {
+        int i = skipWhitespace(size, start, end);
+
+        // the whole part
+        long whole = 0;
+        int digits = 0;
+        for (; i < end; i++, digits++) {
+            int digit = size.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (whole > (Long.MAX_VALUE - digit) / 10) {
+                return INVALID_SIZE;
+            }
+            whole = whole * 10 + digit;
+        }
+
+        // the fraction as fraction / scale
+        long fraction = 0;
+        long scale = 1;
+        if (i < end && size.charAt(i) == '.') {
+            for (i++; i < end; i++, digits++) {
+                int digit = size.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (scale < MAX_FRACTION_SCALE) {
+                    fraction = fraction * 10 + digit;
+                    scale *= 10;
+                }
+            }
+        }
+        if (digits == 0) {
+            return INVALID_SIZE;
+        }
+
+        // the unit
+        i = skipWhitespace(size, i, end);
+        int unitStart = i;
+        while (i < end && Character.isLetter(size.charAt(i))) {
+            i++;
+        }
+        int unit = unitOf(size, unitStart, i);
+        if (unit < 0 || skipWhitespace(size, i, end) != end) {
+            return INVALID_SIZE;
+        }
+
+        // whole * 1024^unit + fraction * 1024^unit / scale
+        int shift = 10 * unit;
+        if (whole > (Long.MAX_VALUE >> shift)) {
+            return INVALID_SIZE;
+        }
+        long bytes = whole << shift;
+        if (fraction != 0) {
+            // long division of fraction * 2^shift by scale, one bit at a time, so nothing overflows
+            long quotient = 0;
+            long remainder = fraction;
+            for (int bit = 0; bit < shift; bit++) {
+                remainder <<= 1;
+                quotient <<= 1;
+                if (remainder >= scale) {
+                    remainder -= scale;
+                    quotient++;
+                }
+            }
+            if (bytes > Long.MAX_VALUE - quotient) {
+                return INVALID_SIZE;
+            }
+            bytes += quotient;
+        }
+        return bytes;
+    }
+
+    private static int skipWhitespace(final CharSequence text, int from, final int end) {
+        while (from < end && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * @return the ordinal of the EnumUtils.Sizes named by text[from, to) in any case, -1 for none
+     */
+    private static int unitOf(final CharSequence text, final int from, final int to) {
+        for (int unit = 0; unit < SIZE_UNITS.length; unit++) {
+            String name = SIZE_UNITS[unit];
+            if (name.length() != to - from) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length() && Character.toLowerCase(text.charAt(from + i)) == name.charAt(i)) {
+                i++;
+            }
+            if (i == name.length()) {
+                return unit;
+            }
+        }
+        return -1;
+    }
+
     // above are formatters for setting values
     // below are formatters for printing values
     // constants
     private static final String truncatedIndication = "...";
-    private static final List<Pair<Long, String>> sizeList;
+    private static final int MAX_DESCRIPTION_LENGTH = 25;
+    // unit names indexed by the power of 1024, see formatSize(long, StringBuilder)
+    private static final String[] SIZE_UNITS;
 
     static {
-        sizeList = new LinkedList<>();
-//        sizeList.add(Pair.of(1208925819614629174706176L, Sizes.yb.toString()));
-//        sizeList.add(Pair.of(1180591620717411303424L, Sizes.zb.toString()));
-//        sizeList.add(Pair.of(1152921504606846976L, Sizes.eb.toString()));
-        sizeList.add(Pair.of(1125899906842624L, Sizes.pb.toString()));
-        sizeList.add(Pair.of(1099511627776L, Sizes.tb.toString()));
-        sizeList.add(Pair.of(1073741824L, Sizes.gb.toString()));
-        sizeList.add(Pair.of(1048576L, Sizes.mb.toString()));
-        sizeList.add(Pair.of(1024L, Sizes.k.toString()));
-        sizeList.add(Pair.of(1L, Sizes.bytes.toString()));
+        Sizes[] sizes = Sizes.values();
+        SIZE_UNITS = new String[sizes.length];
+        for (Sizes unit : sizes) {
+            SIZE_UNITS[unit.ordinal()] = unit.toString();
+        }
     }
 
     static String formatDescription(final String description) {
@@ -125,34 +325,48 @@ class DocumentFormatter {
         }
 
         // DON't truncate
-        if (description.length() <= 25) {
+        if (description.length() <= MAX_DESCRIPTION_LENGTH) {
             return description;
         }
         // DO truncate
+        return formatDescription(description, new StringBuilder(description.length() + truncatedIndication.length())).toString();
+    }
+
+    /**
+     * appends the formatted description without any intermediate String
+     *
+     * @param description   blank appends nothing
+     * @param stringBuilder not null
+     * @return stringBuilder
+     */
+    static StringBuilder formatDescription(final CharSequence description, final StringBuilder stringBuilder) {
+        // Validate preconditions
+        if (StringUtils.isBlank(description)) {
+            return stringBuilder;
+        }
+
+        // DON't truncate
+        int length = description.length();
+        if (length <= MAX_DESCRIPTION_LENGTH) {
+            return stringBuilder.append(description);
+        }
+        // DO truncate
         boolean isFirstWordTooLong = true;
-        for (int i = 0; i < 25; i++) {
+        for (int i = 0; i < MAX_DESCRIPTION_LENGTH; i++) {
             if (' ' == description.charAt(i)) {
                 isFirstWordTooLong = false;
                 break;
             }
         }
 
-        if (isFirstWordTooLong) {
-            // chop the word if necessary
-            return description.substring(0, 25) + truncatedIndication;
-        } else {
-            // MUST truncate BUT don't chop last word.
-            int endIndex = 25;
-            while (endIndex < description.length()) {
-                if (' ' == description.charAt(endIndex)) {
-                    break;
-                }
+        // chop the word if necessary, otherwise MUST truncate BUT don't chop last word.
+        int endIndex = MAX_DESCRIPTION_LENGTH;
+        if (!isFirstWordTooLong) {
+            while (endIndex < length && ' ' != description.charAt(endIndex)) {
                 endIndex++;
             }
-
-            String truncated = description.substring(0, endIndex);
-            return truncated + truncatedIndication;
         }
+        return stringBuilder.append(description, 0, endIndex).append(truncatedIndication);
     }
 
     String formatTime(final Long timeToFormat, final String dateTimePattern) {
@@ -174,21 +388,100 @@ class DocumentFormatter {
             return "";
         }
 
+        if (isDefaultPattern) {
+            ZoneDayCache.Day day = dayCache.day(timeToFormat);
+            if (day != null && day.text != null) {
+                return day.text;
+            }
+        }
         return Instant.ofEpochMilli(timeToFormat).atZone(zoneId).format(dateTimeFormatter);
     }
 
+    /**
+     * appends the date of epochMilli in zoneId.
+     * <p>
+     * with the default yyyy-MM-dd pattern the text comes pre-rendered from the per-day cache,
+     * a custom DateTimeFormatter and years outside 1..9999 go through java.time
+     *
+     * @param epochMilli    the time to format
+     * @param stringBuilder not null
+     * @return stringBuilder
+     */
+    StringBuilder formatDate(final long epochMilli, final StringBuilder stringBuilder) {
+        if (isDefaultPattern) {
+            ZoneDayCache.Day day = dayCache.day(epochMilli);
+            if (day != null && day.text != null) {
+                return stringBuilder.append(day.text);
+            }
+        }
+        dateTimeFormatter.formatTo(Instant.ofEpochMilli(epochMilli).atZone(zoneId), stringBuilder);
+        return stringBuilder;
+    }
+
+    /**
+     * @return the formatTime()/formatDate() calls answered by a day cache, process wide and only while metrics are enabled
+     */
+    long getDayCacheHits() {
+        return dayCache.getHits();
+    }
+
+    /**
+     * @return the formatTime()/formatDate() calls that had to compute their day, process wide and only while metrics are enabled
+     */
+    long getDayCacheMisses() {
+        return dayCache.getMisses();
+    }
+
+    /**
+     * appends epochDay as yyyy-MM-dd (proleptic ISO calendar, as java.time does)
+     *
+     * @return false, with nothing appended, when the year is outside 1..9999
+     */
+    static boolean appendEpochDay(final long epochDay, final StringBuilder stringBuilder) {
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(z, DAYS_PER_400_YEARS);
+        long dayOfEra = z - era * DAYS_PER_400_YEARS;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 1 || year > 9999) {
+            return false;
+        }
+
+        int y = (int) year;
+        stringBuilder.append((char) ('0' + y / 1000)).append((char) ('0' + y / 100 % 10)).append((char) ('0' + y / 10 % 10)).append((char) ('0' + y % 10))
+                .append('-').append((char) ('0' + month / 10)).append((char) ('0' + month % 10))
+                .append('-').append((char) ('0' + day / 10)).append((char) ('0' + day % 10));
+        return true;
+    }
+
     static String formatSize(final Long sizeInBytes) {
         // Validate preconditions
         if (sizeInBytes == null) {
             return "";
         }
 
-        for (Pair<Long, String> longStringPair : sizeList) {
-            if (sizeInBytes > longStringPair.getLeft()) {
-                return sizeInBytes / longStringPair.getLeft() + " " + longStringPair.getRight();
-            }
+        return formatSize(sizeInBytes.longValue(), new StringBuilder(24)).toString();
+    }
+
+    /**
+     * appends the size in the largest unit it strictly exceeds, e.g. 1025 is "1 k" but 1024 is "1024 bytes"; 1 and below are "0 bytes"
+     *
+     * @param sizeInBytes   the size to format
+     * @param stringBuilder not null
+     * @return stringBuilder
+     */
+    static StringBuilder formatSize(final long sizeInBytes, final StringBuilder stringBuilder) {
+        if (sizeInBytes <= 1) {
+            return stringBuilder.append("0 ").append(SIZE_UNITS[0]);
         }
 
-        return "0 " + Sizes.bytes;
+        // sizeInBytes > 1024^unit  <=>  sizeInBytes - 1 >= 2^(10 * unit)
+        int unit = Math.min((63 - Long.numberOfLeadingZeros(sizeInBytes - 1)) / 10, SIZE_UNITS.length - 1);
+        return stringBuilder.append(sizeInBytes >> (10 * unit)).append(' ').append(SIZE_UNITS[unit]);
     }
 }
@@ -0,0 +1,281 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Author: Oliver
+ * <p>
+ * process wide metrics of ingestion, parsing and report generation: LongAdder counters, log-linear latency histograms
+ * and registered gauges, read through snapshot() or written out by export().
+ * <p>
+ * everything is off by default. While off, a counter costs one volatile read and a timer one volatile read and no
+ * System.nanoTime() call, so the hot paths can stay instrumented. Turn on with setEnabled(true) or -Dveev.metrics=true.
+ * <p>
+ * e.g. to expose the size of an accumulator:
+ * DocumentMetrics.registerGauge("accumulator.size", accumulator::size);
+ */
+@Slf4j
+final class DocumentMetrics {
+    // the switch
+    private static volatile boolean enabled = Boolean.getBoolean("veev.metrics");
+    // registry
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<Histogram> HISTOGRAMS = new ArrayList<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+    // counters
+    static final Counter ROWS_INGESTED = counter("rows.ingested");
+    static final Counter PARSE_TIME_FAILURES = counter("parse.time.failures");
+    static final Counter PARSE_SIZE_FAILURES = counter("parse.size.failures");
+    static final Counter REPORT_CHARS_EMITTED = counter("report.chars.emitted");
+    static final Counter REPORTS = counter("report.count");
+    static final Counter DUPLICATES_DROPPED = counter("dedup.dropped");
+    static final Counter DAY_CACHE_HITS = counter("formatter.dayCache.hits");
+    static final Counter DAY_CACHE_MISSES = counter("formatter.dayCache.misses");
+    // latencies in nanoseconds
+    static final Histogram GROUPING = histogram("report.grouping.nanos");
+    static final Histogram SORTING = histogram("report.sorting.nanos");
+    static final Histogram FORMATTING = histogram("report.formatting.nanos");
+
+    private DocumentMetrics() {
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void setEnabled(final boolean isEnabled) {
+        enabled = isEnabled;
+        log.info("setEnabled(): {}", isEnabled);
+    }
+
+    /**
+     * @return the start of a timed section, 0 when metrics are off
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    private static Counter counter(final String name) {
+        Counter counter = new Counter(name);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    private static Histogram histogram(final String name) {
+        Histogram histogram = new Histogram(name);
+        HISTOGRAMS.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * @param name     unique, replaces a gauge of the same name
+     * @param supplier read at every snapshot, must be thread safe
+     */
+    static void registerGauge(final String name, final LongSupplier supplier) {
+        // Validate preconditions
+        Validate.notBlank(name);
+        Validate.notNull(supplier);
+
+        GAUGES.put(name, supplier);
+    }
+
+    static void unregisterGauge(final String name) {
+        GAUGES.remove(name);
+    }
+
+    /**
+     * every counter, gauge and histogram summary (count, sum, max, p50, p90, p99) by name. The values are read one by one,
+     * so a snapshot taken under load is not atomic across metrics.
+     *
+     * @return name -> value, sorted by name
+     */
+    static Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Counter counter : COUNTERS) {
+            snapshot.put(counter.name, counter.sum());
+        }
+        for (Histogram histogram : HISTOGRAMS) {
+            snapshot.put(histogram.name + ".count", histogram.getCount());
+            snapshot.put(histogram.name + ".sum", histogram.getSum());
+            snapshot.put(histogram.name + ".max", histogram.getMax());
+            snapshot.put(histogram.name + ".p50", histogram.percentile(50));
+            snapshot.put(histogram.name + ".p90", histogram.percentile(90));
+            snapshot.put(histogram.name + ".p99", histogram.percentile(99));
+        }
+        for (Map.Entry<String, LongSupplier> entry : GAUGES.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * writes the snapshot as "name value" lines, e.g. for a scrape endpoint
+     *
+     * @param appendable not null
+     * @throws IOException
+     */
+    static void export(final Appendable appendable) throws IOException {
+        for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+            appendable.append(entry.getKey()).append(' ').append(Long.toString(entry.getValue())).append('\n');
+        }
+    }
+
+    /**
+     * zeroes the counters and histograms, gauges are left alone
+     */
+    static void reset() {
+        for (Counter counter : COUNTERS) {
+            counter.adder.reset();
+        }
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    static final class Counter {
+        private final String name;
+        private final LongAdder adder = new LongAdder();
+
+        private Counter(final String name) {
+            this.name = name;
+        }
+
+        void increment() {
+            if (enabled) {
+                adder.increment();
+            }
+        }
+
+        void add(final long value) {
+            if (enabled) {
+                adder.add(value);
+            }
+        }
+
+        long sum() {
+            return adder.sum();
+        }
+    }
+
+    /**
+     * HDR style log-linear histogram of non negative longs: every power of 2 is split into 8 linear buckets,
+     * so a recorded value is off by at most 12.5% and all of 0..Long.MAX_VALUE fits in 488 buckets
+     */
+    static final class Histogram {
+        // constants
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+        // state
+        private final String name;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * records System.nanoTime() - start, nothing when start is 0 (metrics were off when the section began)
+         */
+        void recordSince(final long start) {
+            if (start != 0L) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        void record(final long value) {
+            if (!enabled || value < 0) {
+                return;
+            }
+            counts.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            long previous = max.get();
+            while (value > previous && !max.compareAndSet(previous, value)) {
+                previous = max.get();
+            }
+        }
+
+        static int bucketOf(final long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * @return the largest value that falls into the bucket
+         */
+        static long highestValueOf(final int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int subBucket = bucket % SUB_BUCKETS;
+            long lowest = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+            return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getSum() {
+            return sum.sum();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param percentile 0..100
+         * @return the value at the percentile, rounded up to its bucket but never above the max; 0 when empty
+         */
+        long percentile(final double percentile) {
+            long total = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                total += counts.get(bucket);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += counts.get(bucket);
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(bucket), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts.set(bucket, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Author: Oliver
+ * <p>
+ * compact binary record for one Document, used for the spill files of the external sort.
+ * <p>
+ * Record layout:
+ * byte  nullMask (bit 0 sizeInBytes, bit 1 createdTime, bit 2 modifiedTime are null)
+ * long  sequence (input position, keeps the sort stable across runs)
+ * str   createdBy, name, description, lastModifiedBy (int length of the UTF-8 bytes, -1 for null, then the bytes)
+ * long  sizeInBytes, createdTime, modifiedTime (only the ones that are not null)
+ */
+@Slf4j
+class DocumentRecordCodec {
+    // constants
+    private static final int NULL_SIZE = 1;
+    private static final int NULL_CREATED_TIME = 1 << 1;
+    private static final int NULL_MODIFIED_TIME = 1 << 2;
+
+    private DocumentRecordCodec() {
+    }
+
+    static void write(final DataOutput out, final Document document, final long sequence) throws IOException {
+        int nullMask = (document.sizeInBytes == null ? NULL_SIZE : 0)
+                | (document.createdTime == null ? NULL_CREATED_TIME : 0)
+                | (document.modifiedTime == null ? NULL_MODIFIED_TIME : 0);
+        out.writeByte(nullMask);
+        out.writeLong(sequence);
+        writeString(out, document.createdBy);
+        writeString(out, document.name);
+        writeString(out, document.description);
+        writeString(out, document.lastModifiedBy);
+        if (document.sizeInBytes != null) {
+            out.writeLong(document.sizeInBytes);
+        }
+        if (document.createdTime != null) {
+            out.writeLong(document.createdTime);
+        }
+        if (document.modifiedTime != null) {
+            out.writeLong(document.modifiedTime);
+        }
+    }
+
+    static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * reads the records of one stream back, one at a time
+     */
+    static class RecordReader implements Closeable {
+        private final DataInputStream in;
+        private final DocumentFormatter documentFormatter;
+        // current record
+        Document document;
+        long sequence;
+        // createdBy lower cased once per record, so merging never lower cases inside a comparison
+        String foldedKey;
+
+        /**
+         * @param in                positioned at the first record
+         * @param documentFormatter attached to every Document read back
+         */
+        RecordReader(final DataInputStream in, final DocumentFormatter documentFormatter) {
+            this.in = in;
+            this.documentFormatter = documentFormatter;
+        }
+
+        /**
+         * @return false once the stream is exhausted
+         * @throws IOException
+         */
+        boolean advance() throws IOException {
+            int nullMask = in.read();
+            if (nullMask < 0) {
+                document = null;
+                foldedKey = null;
+                return false;
+            }
+
+            sequence = in.readLong();
+            Document next = new Document();
+            next.documentFormatter = documentFormatter;
+            next.createdBy = readString(in);
+            next.name = readString(in);
+            next.description = readString(in);
+            next.lastModifiedBy = readString(in);
+            next.sizeInBytes = (nullMask & NULL_SIZE) == 0 ? in.readLong() : null;
+            next.createdTime = (nullMask & NULL_CREATED_TIME) == 0 ? in.readLong() : null;
+            next.modifiedTime = (nullMask & NULL_MODIFIED_TIME) == 0 ? in.readLong() : null;
+            document = next;
+            foldedKey = next.createdBy == null ? null : next.createdBy.toLowerCase();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
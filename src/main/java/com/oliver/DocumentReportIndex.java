@@ -0,0 +1,324 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * long-lived, incrementally maintained report: add, update and remove cost O(log n), rendering reuses every group
+ * that hasn't changed since it was last rendered.
+ * <p>
+ * groups live in a TreeMap by AuthorKey, folded once per group, and are found by name in a HashMap; each group is
+ * a TreeSet by (createdTime, insertion sequence),
+ * so the report is the same as Document.printDocumentsReportHelper() produces for the documents in insertion order.
+ * A missing createdTime sorts first. Documents are tracked by identity; after changing a document call update(),
+ * the index keeps the createdBy and createdTime it was filed under until then.
+ * <p>
+ * the rendered text of unchanged groups is kept in an LRU cache of at most maxCachedChars chars (2 bytes each, 32 MB by
+ * default) on top of the documents themselves; the least recently written groups are rendered again when they no
+ * longer fit, and a group larger than the whole cache is never cached. Not thread safe.
+ */
+@Slf4j
+class DocumentReportIndex {
+    // constants
+    static final long DEFAULT_MAX_CACHED_CHARS = 16L << 20;
+    // groups in report order
+    private final TreeMap<AuthorKey, Group> groups = new TreeMap<>();
+    private final Map<String, Group> groupsByName = new HashMap<>();
+    private final Map<Document, Entry> entries = new IdentityHashMap<>();
+    // groups changed since the last writeChangedGroups(), including the removed ones
+    private final Set<AuthorKey> changedKeys = new TreeSet<>();
+    private long nextSequence;
+    // rendered text of unchanged groups, least recently written first
+    private final long maxCachedChars;
+    private final LinkedHashMap<Group, String> renderedGroups = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedChars;
+
+    DocumentReportIndex() {
+        this(DEFAULT_MAX_CACHED_CHARS);
+    }
+
+    /**
+     * @param maxCachedChars the rendered chars kept for unchanged groups, 0 to render every group on every write
+     */
+    DocumentReportIndex(final long maxCachedChars) {
+        // Validate preconditions
+        Validate.isTrue(maxCachedChars >= 0);
+
+        this.maxCachedChars = maxCachedChars;
+    }
+
+    /**
+     * @param document not null, with a createdBy; adding a document already in the index is a no-op
+     * @return true when the document was added
+     */
+    boolean add(final Document document) {
+        // Validate preconditions
+        Validate.notNull(document);
+        Validate.notNull(document.createdBy, "createdBy is the group key of the report");
+
+        if (entries.containsKey(document)) {
+            return false;
+        }
+        file(new Entry(document, nextSequence++));
+        DocumentMetrics.ROWS_INGESTED.increment();
+        return true;
+    }
+
+    void addAll(final Collection<Document> documents) {
+        for (Document document : documents) {
+            add(document);
+        }
+    }
+
+    /**
+     * re-files a document after any of its fields changed, it keeps its place among documents created at the same time
+     *
+     * @param document a document in the index
+     */
+    void update(final Document document) {
+        // Validate preconditions
+        Validate.notNull(document);
+        Validate.notNull(document.createdBy, "createdBy is the group key of the report");
+        Entry entry = entries.get(document);
+        Validate.isTrue(entry != null, "document is not in the index: %s", document);
+
+        unfile(entry);
+        file(new Entry(document, entry.sequence));
+    }
+
+    /**
+     * @return true when the document was in the index
+     */
+    boolean remove(final Document document) {
+        Entry entry = entries.get(document);
+        if (entry == null) {
+            return false;
+        }
+        unfile(entry);
+        return true;
+    }
+
+    private void file(final Entry entry) {
+        Group group = groupsByName.get(entry.key);
+        if (group == null) {
+            group = new Group(new AuthorKey(entry.key));
+            groups.put(group.authorKey, group);
+            groupsByName.put(entry.key, group);
+        }
+        group.entries.add(entry);
+        evict(group);
+        entries.put(entry.document, entry);
+        changedKeys.add(group.authorKey);
+    }
+
+    private void unfile(final Entry entry) {
+        Group group = groupsByName.get(entry.key);
+        group.entries.remove(entry);
+        evict(group);
+        if (group.entries.isEmpty()) {
+            groups.remove(group.authorKey);
+            groupsByName.remove(entry.key);
+        }
+        entries.remove(entry.document);
+        changedKeys.add(group.authorKey);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int getGroupCount() {
+        return groups.size();
+    }
+
+    boolean contains(final Document document) {
+        return entries.containsKey(document);
+    }
+
+    /**
+     * @return the keys of the groups added, changed or removed since the last writeChangedGroups(), in report order
+     */
+    Set<String> getChangedKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (AuthorKey key : changedKeys) {
+            keys.add(key.name);
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * the whole current report, re-rendering only the groups that changed since they were last rendered
+     *
+     * @param appendable not null
+     * @throws IOException
+     */
+    void writeDocumentsReport(final Appendable appendable) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        for (Group group : groups.values()) {
+            write(reportWriter, group);
+        }
+        reportWriter.flush();
+    }
+
+    StringBuilder printDocumentsReportHelper() {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeDocumentsReport(stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+
+    /**
+     * only the groups changed since the last call, in report order; a removed group has nothing left to write
+     *
+     * @param appendable not null
+     * @return the keys of all the changed groups, removed ones included
+     * @throws IOException
+     */
+    List<String> writeChangedGroups(final Appendable appendable) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        List<String> keys = new ArrayList<>(changedKeys.size());
+        for (AuthorKey key : changedKeys) {
+            Group group = groupsByName.get(key.name);
+            if (group != null) {
+                write(reportWriter, group);
+            }
+            keys.add(key.name);
+        }
+        reportWriter.flush();
+        log.debug("writeChangedGroups(): {} of {} groups", keys.size(), groups.size());
+        changedKeys.clear();
+        return keys;
+    }
+
+    /**
+     * @return the rendered chars held for unchanged groups
+     */
+    long getCachedChars() {
+        return cachedChars;
+    }
+
+    private void write(final DocumentReportWriter reportWriter, final Group group) throws IOException {
+        String rendered = renderedGroups.get(group);
+        if (rendered != null) {
+            reportWriter.writeRenderedGroup(group.key, rendered);
+            return;
+        }
+        if (group.renderedLength > maxCachedChars) {
+            // would not fit anyway, stream it without a copy
+            reportWriter.writeHeader(group.key);
+            for (Entry entry : group.entries) {
+                reportWriter.writeRow(entry.document);
+            }
+            return;
+        }
+        rendered = group.render();
+        group.renderedLength = rendered.length();
+        if (rendered.length() <= maxCachedChars) {
+            renderedGroups.put(group, rendered);
+            cachedChars += rendered.length();
+            Iterator<Map.Entry<Group, String>> eldest = renderedGroups.entrySet().iterator();
+            while (cachedChars > maxCachedChars) {
+                cachedChars -= eldest.next().getValue().length();
+                eldest.remove();
+            }
+        }
+        reportWriter.writeRenderedGroup(group.key, rendered);
+    }
+
+    private void evict(final Group group) {
+        group.renderedLength = -1;
+        String rendered = renderedGroups.remove(group);
+        if (rendered != null) {
+            cachedChars -= rendered.length();
+        }
+    }
+
+    /**
+     * the same page DocumentReportPage.query() selects from the documents in insertion order,
+     * read straight off the sorted groups: O(log n) to find the cursor, then O(page)
+     *
+     * @param afterKey      the nextCursor of the previous page, null for the first page
+     * @param authorLimit   the maximum number of groups
+     * @param documentLimit the maximum number of documents per group
+     */
+    DocumentReportPage page(final String afterKey, final int authorLimit, final int documentLimit) {
+        // Validate preconditions
+        Validate.isTrue(authorLimit > 0);
+        Validate.isTrue(documentLimit > 0);
+
+        NavigableMap<AuthorKey, Group> tail = afterKey == null ? groups : groups.tailMap(new AuthorKey(afterKey), false);
+        LinkedHashMap<String, List<Document>> pageGroups = new LinkedHashMap<>();
+        Map<String, Integer> groupSizes = new HashMap<>();
+        String lastKey = null;
+        for (Group group : tail.values()) {
+            if (pageGroups.size() == authorLimit) {
+                // there is at least one more group
+                return new DocumentReportPage(pageGroups, groupSizes, lastKey);
+            }
+            List<Document> documents = new ArrayList<>(Math.min(documentLimit, group.entries.size()));
+            for (Entry entry : group.entries) {
+                if (documents.size() == documentLimit) {
+                    break;
+                }
+                documents.add(entry.document);
+            }
+            pageGroups.put(group.key, documents);
+            groupSizes.put(group.key, group.entries.size());
+            lastKey = group.key;
+        }
+        return new DocumentReportPage(pageGroups, groupSizes, null);
+    }
+
+    // the place of a document in the index, snapshotted when it was filed
+    private static final class Entry {
+        final Document document;
+        final String key;
+        final long createdTime;
+        final long sequence;
+
+        Entry(final Document document, final long sequence) {
+            this.document = document;
+            this.key = document.createdBy;
+            this.createdTime = document.createdTime == null ? Long.MIN_VALUE : document.createdTime;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> ENTRY_ORDER = (o1, o2) -> {
+        int result = Long.compare(o1.createdTime, o2.createdTime);
+        return result != 0 ? result : Long.compare(o1.sequence, o2.sequence);
+    };
+
+    private static final class Group {
+        final AuthorKey authorKey;
+        final String key;
+        final TreeSet<Entry> entries = new TreeSet<>(ENTRY_ORDER);
+        // the length the group had when it was last rendered, -1 before that
+        long renderedLength = -1;
+
+        Group(final AuthorKey authorKey) {
+            this.authorKey = authorKey;
+            this.key = authorKey.name;
+        }
+
+        String render() throws IOException {
+            StringBuilder stringBuilder = new StringBuilder();
+            DocumentReportWriter reportWriter = new DocumentReportWriter(stringBuilder);
+            reportWriter.writeHeader(key);
+            for (Entry entry : entries) {
+                reportWriter.writeRow(entry.document);
+            }
+            return stringBuilder.toString();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.oliver;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * one page of the report: the first authorLimit groups after a cursor, each with its first documentLimit documents.
+ * <p>
+ * query() makes a single pass with bounded heaps, one of at most authorLimit keys and one of at most documentLimit
+ * documents per kept key, so it costs O(n log(page)) time and O(page) memory instead of grouping, sorting and
+ * rendering everything. The page is a prefix of the full Document.printDocumentsReportHelper() report cut to the limits.
+ */
+@Slf4j
+@Getter
+class DocumentReportPage {
+    // the groups of the page in report order, each cut to documentLimit documents
+    private final LinkedHashMap<String, List<Document>> groups;
+    // the number of documents of every group of the page before the cut
+    private final Map<String, Integer> groupSizes;
+    // pass as afterKey for the next page, null when this is the last page
+    private final String nextCursor;
+
+    DocumentReportPage(final LinkedHashMap<String, List<Document>> groups, final Map<String, Integer> groupSizes, final String nextCursor) {
+        this.groups = groups;
+        this.groupSizes = groupSizes;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @param documents     every document has a createdBy; a missing createdTime sorts first
+     * @param afterKey      the nextCursor of the previous page, null for the first page
+     * @param authorLimit   the maximum number of groups
+     * @param documentLimit the maximum number of documents per group
+     */
+    static DocumentReportPage query(final Iterable<Document> documents, final String afterKey, final int authorLimit, final int documentLimit) {
+        // Validate preconditions
+        Validate.notNull(documents);
+        Validate.isTrue(authorLimit > 0);
+        Validate.isTrue(documentLimit > 0);
+
+        // the smallest authorLimit keys after the cursor, the largest kept key is the one to evict;
+        // a key is folded once when it is looked at, a kept key is found by name without folding it again
+        AuthorKey after = afterKey == null ? null : new AuthorKey(afterKey);
+        TreeMap<AuthorKey, Selection> selections = new TreeMap<>();
+        Map<String, Selection> selectionsByName = new HashMap<>();
+        boolean hasMore = false;
+        long sequence = 0;
+        for (Document document : documents) {
+            long position = sequence++;
+            Selection selection = selectionsByName.get(document.createdBy);
+            if (selection == null) {
+                AuthorKey key = new AuthorKey(document.createdBy);
+                if (after != null && key.compareTo(after) <= 0) {
+                    continue;
+                }
+                if (selections.size() == authorLimit) {
+                    hasMore = true;
+                    if (key.compareTo(selections.lastKey()) > 0) {
+                        continue;
+                    }
+                    selectionsByName.remove(selections.pollLastEntry().getKey().name);
+                }
+                selection = new Selection(documentLimit);
+                selections.put(key, selection);
+                selectionsByName.put(key.name, selection);
+            }
+            selection.offer(document, position);
+        }
+
+        LinkedHashMap<String, List<Document>> groups = new LinkedHashMap<>();
+        Map<String, Integer> groupSizes = new HashMap<>();
+        for (Map.Entry<AuthorKey, Selection> entry : selections.entrySet()) {
+            groups.put(entry.getKey().name, entry.getValue().toList());
+            groupSizes.put(entry.getKey().name, entry.getValue().count);
+        }
+        log.debug("query(): {} groups after {}, hasMore = {}", groups.size(), afterKey, hasMore);
+        return new DocumentReportPage(groups, groupSizes, hasMore ? selections.lastKey().name : null);
+    }
+
+    void writeDocumentsReport(final Appendable appendable) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        for (Map.Entry<String, List<Document>> entry : groups.entrySet()) {
+            reportWriter.writeGroup(entry.getKey(), entry.getValue());
+        }
+        reportWriter.flush();
+    }
+
+    StringBuilder printDocumentsReportHelper() {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeDocumentsReport(stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+
+    /**
+     * the first limit documents of one group by (createdTime, input position), kept in a bounded max heap
+     */
+    private static final class Selection {
+        private final int limit;
+        private final PriorityQueue<Candidate> heap;
+        int count;
+
+        Selection(final int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 16), CANDIDATE_ORDER.reversed());
+        }
+
+        void offer(final Document document, final long position) {
+            count++;
+            Candidate candidate = new Candidate(document, position);
+            if (heap.size() < limit) {
+                heap.add(candidate);
+            } else if (CANDIDATE_ORDER.compare(candidate, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        List<Document> toList() {
+            Candidate[] candidates = heap.toArray(new Candidate[0]);
+            Arrays.sort(candidates, CANDIDATE_ORDER);
+            List<Document> documents = new ArrayList<>(candidates.length);
+            for (Candidate candidate : candidates) {
+                documents.add(candidate.document);
+            }
+            return documents;
+        }
+    }
+
+    private static final class Candidate {
+        final Document document;
+        final long createdTime;
+        final long position;
+
+        Candidate(final Document document, final long position) {
+            this.document = document;
+            this.createdTime = document.createdTime == null ? Long.MIN_VALUE : document.createdTime;
+            this.position = position;
+        }
+    }
+
+    private static final Comparator<Candidate> CANDIDATE_ORDER = (o1, o2) -> {
+        int result = Long.compare(o1.createdTime, o2.createdTime);
+        return result != 0 ? result : Long.compare(o1.position, o2.position);
+    };
+}
@@ -0,0 +1,265 @@
+package com.oliver;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Author: Oliver
+ * <p>
+ * serves many concurrent report requests from one shared, immutable DocumentReportSnapshot.
+ * <p>
+ * every request runs as its own task and streams its report straight into the sink of the request, so a slow sink only
+ * blocks its own task. On a JDK with virtual threads (21+) each task gets a virtual thread, otherwise they share the
+ * given executor. At most maxConcurrentRequests run or wait at a time: submit() waits up to admissionTimeoutMillis for
+ * a slot, then rejects. Cancelling the returned Future interrupts the task, which stops at the next group or row chunk.
+ * publish() swaps in a newer snapshot; requests already running finish on the one they started with.
+ */
+@Slf4j
+class DocumentReportService implements Closeable {
+    // constants
+    static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 256;
+    static final long DEFAULT_ADMISSION_TIMEOUT_MILLIS = 1000;
+    private static final int ROWS_BETWEEN_CANCELLATION_CHECKS = 256;
+    // settings
+    private final ExecutorService executorService;
+    private final boolean isOwningExecutor;
+    private final Semaphore admissions;
+    private final long admissionTimeoutMillis;
+    // state
+    private final AtomicReference<DocumentReportSnapshot> snapshot;
+
+    /**
+     * virtual threads when the JDK has them, a fixed pool of one thread per core otherwise
+     */
+    DocumentReportService(final DocumentReportSnapshot snapshot) {
+        this(snapshot, null, DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_ADMISSION_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param snapshot               served until the next publish()
+     * @param executorService        runs the requests, null for virtual threads (or a fixed pool on older JDKs);
+     *                               a given executor is not shut down by close()
+     * @param maxConcurrentRequests  requests running or queued at a time, the rest wait in submit()
+     * @param admissionTimeoutMillis how long submit() waits for a slot before rejecting
+     */
+    DocumentReportService(final DocumentReportSnapshot snapshot, final ExecutorService executorService,
+                          final int maxConcurrentRequests, final long admissionTimeoutMillis) {
+        // Validate preconditions
+        Validate.notNull(snapshot);
+        Validate.isTrue(maxConcurrentRequests > 0);
+        Validate.isTrue(admissionTimeoutMillis >= 0);
+
+        this.snapshot = new AtomicReference<>(snapshot);
+        this.isOwningExecutor = executorService == null;
+        this.executorService = executorService == null ? newDefaultExecutor() : executorService;
+        this.admissions = new Semaphore(maxConcurrentRequests);
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up reflectively, so this still compiles and runs on Java 8
+     */
+    static ExecutorService newDefaultExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            log.debug("newDefaultExecutor(): virtual threads");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            log.debug("newDefaultExecutor(): no virtual threads, {} platform threads", threads);
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    /**
+     * @param snapshot serves every request submitted from now on
+     */
+    void publish(final DocumentReportSnapshot snapshot) {
+        Validate.notNull(snapshot);
+        this.snapshot.set(snapshot);
+    }
+
+    DocumentReportSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * @param request what to report
+     * @param sink    receives the report of this request only, flushed at the end when it is Flushable
+     * @return the number of documents written; cancel(true) stops the request
+     * @throws RejectedExecutionException when no slot frees up within the admission timeout
+     * @throws InterruptedException       when interrupted while waiting for a slot
+     */
+    Future<Long> submit(final ReportRequest request, final Appendable sink) throws InterruptedException {
+        // Validate preconditions
+        Validate.notNull(request);
+        Validate.notNull(sink);
+
+        if (!admissions.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new RejectedExecutionException("too many concurrent report requests");
+        }
+        DocumentReportSnapshot current = snapshot.get();
+        RequestTask task = new RequestTask(() -> writeReport(current, request, sink));
+        try {
+            executorService.execute(task);
+        } catch (RejectedExecutionException e) {
+            admissions.release();
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * gives the slot back exactly once: when run() returns, so a request cancelled while running keeps its slot until
+     * it actually stops, or from done() when it is cancelled while still queued and never runs
+     */
+    private final class RequestTask extends FutureTask<Long> {
+        private final AtomicBoolean isReleased = new AtomicBoolean();
+        private volatile boolean isStarted;
+
+        private RequestTask(final Callable<Long> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            isStarted = true;
+            try {
+                super.run();
+            } finally {
+                release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (!isStarted) {
+                release();
+            }
+        }
+
+        private void release() {
+            if (isReleased.compareAndSet(false, true)) {
+                admissions.release();
+            }
+        }
+    }
+
+    /**
+     * the report of one request, the same format as Document.printDocumentsReportHelper(); groups left empty by the
+     * filter are skipped
+     *
+     * @return the number of documents written
+     */
+    static long writeReport(final DocumentReportSnapshot snapshot, final ReportRequest request, final Appendable sink) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(sink);
+        long written = 0;
+        for (Map.Entry<String, List<Document>> group : groupsOf(snapshot, request)) {
+            checkCancelled();
+            boolean isHeaderWritten = false;
+            int rows = 0;
+            for (Document document : group.getValue()) {
+                // counts the rows scanned, so a filter that skips most of them still notices a cancel
+                if (++rows % ROWS_BETWEEN_CANCELLATION_CHECKS == 0) {
+                    checkCancelled();
+                }
+                if (request.filter != null && !request.filter.test(document)) {
+                    continue;
+                }
+                if (!isHeaderWritten) {
+                    reportWriter.writeHeader(group.getKey());
+                    isHeaderWritten = true;
+                }
+                reportWriter.writeRow(document);
+                written++;
+            }
+        }
+        reportWriter.flush();
+        return written;
+    }
+
+    private static Collection<Map.Entry<String, List<Document>>> groupsOf(final DocumentReportSnapshot snapshot, final ReportRequest request) {
+        if (request.authors == null) {
+            return snapshot.getGroups().entrySet();
+        }
+        // the requested authors that exist, in report order
+        TreeMap<AuthorKey, List<Document>> groups = new TreeMap<>();
+        for (String author : request.authors) {
+            List<Document> group = snapshot.getGroups().get(author);
+            if (group != null) {
+                groups.put(new AuthorKey(author), group);
+            }
+        }
+        List<Map.Entry<String, List<Document>>> entries = new ArrayList<>(groups.size());
+        for (Map.Entry<AuthorKey, List<Document>> entry : groups.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey().name, entry.getValue()));
+        }
+        return entries;
+    }
+
+    private static void checkCancelled() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("report request cancelled");
+        }
+    }
+
+    /**
+     * @return the number of requests that can still be admitted right now
+     */
+    int getAvailableSlots() {
+        return admissions.availablePermits();
+    }
+
+    /**
+     * stops taking requests and waits for the running ones; shuts the executor down only when the service created it
+     */
+    @Override
+    public void close() {
+        if (isOwningExecutor) {
+            executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * what one client asks for: the whole report, some authors, and/or only the documents matching a filter
+     */
+    @Getter
+    static final class ReportRequest {
+        // null for all the authors
+        private final Set<String> authors;
+        // null for all the documents, must be thread safe
+        private final Predicate<Document> filter;
+
+        ReportRequest(final Collection<String> authors, final Predicate<Document> filter) {
+            this.authors = authors == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(authors));
+            this.filter = filter;
+        }
+
+        static ReportRequest all() {
+            return new ReportRequest(null, null);
+        }
+
+        static ReportRequest forAuthors(final String... authors) {
+            return new ReportRequest(Arrays.asList(authors), null);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.oliver;
+
+import lombok.Getter;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * an immutable, already grouped and sorted report, cut consistently from a structure that keeps changing
+ */
+@Getter
+class DocumentReportSnapshot {
+    // the groups in report order, unmodifiable
+    private final Map<String, List<Document>> groups;
+    private final int size;
+
+    /**
+     * @param groups in report order, each group sorted; taken over, not copied
+     */
+    DocumentReportSnapshot(final LinkedHashMap<String, List<Document>> groups) {
+        // Validate preconditions
+        Validate.notNull(groups);
+
+        int size = 0;
+        for (Map.Entry<String, List<Document>> entry : groups.entrySet()) {
+            size += entry.getValue().size();
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.groups = Collections.unmodifiableMap(groups);
+        this.size = size;
+    }
+
+    /**
+     * @param documents grouped and sorted the way Document.printDocumentsReportHelper() does
+     */
+    static DocumentReportSnapshot of(final Collection<Document> documents) {
+        return new DocumentReportSnapshot(Document.groupDocuments(documents));
+    }
+
+    void writeDocumentsReport(final Appendable appendable) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        for (Map.Entry<String, List<Document>> entry : groups.entrySet()) {
+            reportWriter.writeGroup(entry.getKey(), entry.getValue());
+        }
+        reportWriter.flush();
+    }
+
+    StringBuilder printDocumentsReportHelper() {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeDocumentsReport(stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+}
@@ -0,0 +1,147 @@
+package com.oliver;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Author: Oliver
+ * <p>
+ * streams the report into an Appendable in bounded chunks, so the whole report never has to sit in memory at once.
+ * <p>
+ * Output format (one header line per group, one line per document):
+ * Andy Andrews
+ * Document{'Andy Zed','Last_WORD TOO_Long_BUT_Don't_Chop_keep_it_whole_right?...',924 k,1300-01-01,1300-01-01}
+ */
+class DocumentReportWriter implements Flushable {
+    // constants
+    static final int DEFAULT_CHUNK_SIZE = 8192;
+    // target and the reusable chunk
+    private final Appendable appendable;
+    private final StringBuilder chunk;
+    private final int chunkSize;
+    private final boolean isDirect;
+    // told where every group starts, null for plain text targets
+    private final CompressedReportOutput compressedOutput;
+    // where the chars not yet counted as emitted start in a direct target
+    private int uncountedFrom;
+
+    DocumentReportWriter(final Appendable appendable) {
+        this(appendable, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param appendable where the report goes; a StringBuilder target is written into directly
+     * @param chunkSize  the number of chars buffered before they are handed to the appendable
+     */
+    DocumentReportWriter(final Appendable appendable, final int chunkSize) {
+        // Validate preconditions
+        Validate.notNull(appendable);
+        Validate.isTrue(chunkSize > 0);
+
+        this.appendable = appendable;
+        this.chunkSize = chunkSize;
+        // a StringBuilder holds the whole report anyway, copying through a chunk would only add work
+        this.isDirect = appendable instanceof StringBuilder;
+        this.chunk = isDirect ? (StringBuilder) appendable : new StringBuilder(chunkSize + 256);
+        this.uncountedFrom = chunk.length();
+        this.compressedOutput = appendable instanceof CompressedReportOutput ? (CompressedReportOutput) appendable : null;
+    }
+
+    void writeGroup(final String key, final Iterable<Document> documents) throws IOException {
+        writeHeader(key);
+        for (Document document : documents) {
+            writeRow(document);
+        }
+    }
+
+    void writeHeader(final String key) throws IOException {
+        startGroup(key);
+        chunk.append(key).append('\n');
+        flushIfFull();
+    }
+
+    void writeRow(final Document document) throws IOException {
+        document.appendBeautify(chunk).append('\n');
+        flushIfFull();
+    }
+
+    /**
+     * a row behind a marker, e.g. "+ " in a delta report
+     */
+    void writeRow(final String marker, final Document document) throws IOException {
+        chunk.append(marker);
+        writeRow(document);
+    }
+
+    void writeRow(final DocumentBatch batch, final int row) throws IOException {
+        batch.appendBeautify(chunk, row).append('\n');
+        flushIfFull();
+    }
+
+    void writeRow(final DocumentStore store, final int row) throws IOException {
+        store.appendBeautify(chunk, row).append('\n');
+        flushIfFull();
+    }
+
+    void writeRow(final String marker, final DocumentStore store, final int row) throws IOException {
+        chunk.append(marker);
+        writeRow(store, row);
+    }
+
+    /**
+     * text rendered earlier by another DocumentReportWriter, e.g. a cached group
+     */
+    void writeRendered(final CharSequence rendered) throws IOException {
+        chunk.append(rendered);
+        flushIfFull();
+    }
+
+    /**
+     * a whole group rendered earlier, header included
+     */
+    void writeRenderedGroup(final String key, final CharSequence rendered) throws IOException {
+        startGroup(key);
+        writeRendered(rendered);
+    }
+
+    private void startGroup(final String key) throws IOException {
+        if (compressedOutput != null) {
+            // a compressed target may start a new block here, so it has to have every char of the previous group
+            if (chunk.length() > 0) {
+                drain();
+            }
+            compressedOutput.startGroup(key);
+        }
+    }
+
+    private void flushIfFull() throws IOException {
+        if (!isDirect && chunk.length() >= chunkSize) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        DocumentMetrics.REPORT_CHARS_EMITTED.add(chunk.length());
+        appendable.append(chunk);
+        chunk.setLength(0);
+    }
+
+    /**
+     * hands any buffered chars to the appendable, and flushes it as well when it is Flushable
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!isDirect && chunk.length() > 0) {
+            drain();
+        }
+        if (isDirect) {
+            DocumentMetrics.REPORT_CHARS_EMITTED.add(chunk.length() - uncountedFrom);
+            uncountedFrom = chunk.length();
+        }
+        if (appendable instanceof Flushable) {
+            ((Flushable) appendable).flush();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.oliver;
+
+import lombok.Getter;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Author: Oliver
+ * <p>
+ * per author statistics: the document count, the total, average and largest sizeInBytes, and the earliest and latest
+ * createdTime and modifiedTime.
+ * <p>
+ * the accumulators are primitive long columns indexed by author id, filled by add() one document at a time (e.g. by
+ * Document.groupDocuments() in its grouping pass) and combined with merge(), so every partition of a parallel run can
+ * keep its own rollup. A missing value is left out of the statistics of its field. Not thread safe.
+ * <p>
+ * Output format (one summary line per author, dates and sizes formatted like the rows):
+ * Andy Andrews
+ * Summary{2 documents,87 gb total,43 gb average,87 gb max,created 1300-01-01..1501-01-01,modified 1300-01-01..1501-01-01}
+ */
+class DocumentRollup {
+    // constants
+    private static final int DEFAULT_CAPACITY = 16;
+    // Utility
+    @Getter
+    private final DocumentFormatter documentFormatter;
+    private final AuthorDictionary authors = new AuthorDictionary();
+    // accumulators indexed by author id
+    private long[] counts = new long[DEFAULT_CAPACITY];
+    private long[] sizeCounts = new long[DEFAULT_CAPACITY];
+    private long[] totalSizes = new long[DEFAULT_CAPACITY];
+    private long[] maxSizes = new long[DEFAULT_CAPACITY];
+    private long[] minCreatedTimes = new long[DEFAULT_CAPACITY];
+    private long[] maxCreatedTimes = new long[DEFAULT_CAPACITY];
+    private long[] minModifiedTimes = new long[DEFAULT_CAPACITY];
+    private long[] maxModifiedTimes = new long[DEFAULT_CAPACITY];
+
+    /**
+     * @param documentFormatter formats the dates of the summary
+     */
+    DocumentRollup(final DocumentFormatter documentFormatter) {
+        // Validate preconditions
+        Validate.notNull(documentFormatter);
+
+        this.documentFormatter = documentFormatter;
+    }
+
+    static DocumentRollup of(final Collection<Document> documents, final DocumentFormatter documentFormatter) {
+        DocumentRollup rollup = new DocumentRollup(documentFormatter);
+        for (Document document : documents) {
+            rollup.add(document);
+        }
+        return rollup;
+    }
+
+    /**
+     * the rows cut into one slice per partition, every slice rolled up by its own task, then merged
+     */
+    static DocumentRollup of(final DocumentBatch batch, final ForkJoinPool forkJoinPool, final int partitions) {
+        // Validate preconditions
+        Validate.notNull(batch);
+        Validate.isTrue(partitions > 0);
+
+        int size = batch.size();
+        return forkJoinPool.submit(() -> IntStream.range(0, partitions).parallel()
+                .mapToObj(partition -> {
+                    DocumentRollup rollup = new DocumentRollup(batch.getDocumentFormatter());
+                    int to = (int) ((long) size * (partition + 1) / partitions);
+                    for (int row = (int) ((long) size * partition / partitions); row < to; row++) {
+                        rollup.add(batch, row);
+                    }
+                    return rollup;
+                })
+                .reduce((rollup1, rollup2) -> rollup1.merge(rollup2))
+                .get()).join();
+    }
+
+    void add(final Document document) {
+        int id = authors.intern(Objects.requireNonNull(document.createdBy, "createdBy is the group key of the report"));
+        add(id, 1, document.sizeInBytes == null ? 0 : 1, document.sizeInBytes == null ? 0 : document.sizeInBytes, unbox(document.sizeInBytes),
+                unbox(document.createdTime), unbox(document.createdTime), unbox(document.modifiedTime), unbox(document.modifiedTime));
+    }
+
+    void add(final DocumentBatch batch, final int row) {
+        int id = authors.intern(Objects.requireNonNull(batch.getCreatedBy(row), "createdBy is the group key of the report"));
+        long sizeInBytes = batch.getSizeInBytes(row);
+        boolean hasSize = sizeInBytes != DocumentBatch.NULL_VALUE;
+        add(id, 1, hasSize ? 1 : 0, hasSize ? sizeInBytes : 0, sizeInBytes,
+                batch.getCreatedTime(row), batch.getCreatedTime(row), batch.getModifiedTime(row), batch.getModifiedTime(row));
+    }
+
+    /**
+     * adds every author of the other rollup into this one
+     *
+     * @return this
+     */
+    DocumentRollup merge(final DocumentRollup other) {
+        for (int otherId = 0; otherId < other.authors.size(); otherId++) {
+            add(authors.intern(other.authors.getName(otherId)), other.counts[otherId], other.sizeCounts[otherId],
+                    other.totalSizes[otherId], other.maxSizes[otherId], other.minCreatedTimes[otherId],
+                    other.maxCreatedTimes[otherId], other.minModifiedTimes[otherId], other.maxModifiedTimes[otherId]);
+        }
+        return this;
+    }
+
+    /**
+     * the missing values are DocumentBatch.NULL_VALUE, which never wins a min or max
+     */
+    private void add(final int id, final long count, final long sizeCount, final long totalSize, final long maxSize,
+                     final long minCreatedTime, final long maxCreatedTime, final long minModifiedTime, final long maxModifiedTime) {
+        if (id == counts.length || counts[id] == 0) {
+            ensureCapacity(id + 1);
+            maxSizes[id] = DocumentBatch.NULL_VALUE;
+            minCreatedTimes[id] = DocumentBatch.NULL_VALUE;
+            maxCreatedTimes[id] = DocumentBatch.NULL_VALUE;
+            minModifiedTimes[id] = DocumentBatch.NULL_VALUE;
+            maxModifiedTimes[id] = DocumentBatch.NULL_VALUE;
+        }
+        counts[id] += count;
+        sizeCounts[id] += sizeCount;
+        totalSizes[id] += totalSize;
+        maxSizes[id] = Math.max(maxSizes[id], maxSize);
+        minCreatedTimes[id] = min(minCreatedTimes[id], minCreatedTime);
+        maxCreatedTimes[id] = Math.max(maxCreatedTimes[id], maxCreatedTime);
+        minModifiedTimes[id] = min(minModifiedTimes[id], minModifiedTime);
+        maxModifiedTimes[id] = Math.max(maxModifiedTimes[id], maxModifiedTime);
+    }
+
+    private static long min(final long value1, final long value2) {
+        return value1 == DocumentBatch.NULL_VALUE ? value2 : value2 == DocumentBatch.NULL_VALUE ? value1 : Math.min(value1, value2);
+    }
+
+    private static long unbox(final Long value) {
+        return value == null ? DocumentBatch.NULL_VALUE : value;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > counts.length) {
+            int newCapacity = Math.max(capacity, counts.length * 2);
+            counts = Arrays.copyOf(counts, newCapacity);
+            sizeCounts = Arrays.copyOf(sizeCounts, newCapacity);
+            totalSizes = Arrays.copyOf(totalSizes, newCapacity);
+            maxSizes = Arrays.copyOf(maxSizes, newCapacity);
+            minCreatedTimes = Arrays.copyOf(minCreatedTimes, newCapacity);
+            maxCreatedTimes = Arrays.copyOf(maxCreatedTimes, newCapacity);
+            minModifiedTimes = Arrays.copyOf(minModifiedTimes, newCapacity);
+            maxModifiedTimes = Arrays.copyOf(maxModifiedTimes, newCapacity);
+        }
+    }
+
+    int getAuthorCount() {
+        return authors.size();
+    }
+
+    /**
+     * @return the authors in report order
+     */
+    List<String> getAuthors() {
+        int[] ranks = authors.ranks();
+        String[] names = new String[ranks.length];
+        for (int id = 0; id < ranks.length; id++) {
+            names[ranks[id]] = authors.getName(id);
+        }
+        return Arrays.asList(names);
+    }
+
+    long getCount(final String author) {
+        int id = authors.getId(author);
+        return id == AuthorDictionary.NULL_ID ? 0 : counts[id];
+    }
+
+    long getTotalSize(final String author) {
+        int id = authors.getId(author);
+        return id == AuthorDictionary.NULL_ID ? 0 : totalSizes[id];
+    }
+
+    /**
+     * @return DocumentBatch.NULL_VALUE when no document of the author has a size, like the getters below
+     */
+    long getMaxSize(final String author) {
+        return valueOf(maxSizes, author);
+    }
+
+    long getAverageSize(final String author) {
+        int id = authors.getId(author);
+        return id == AuthorDictionary.NULL_ID || sizeCounts[id] == 0 ? DocumentBatch.NULL_VALUE : totalSizes[id] / sizeCounts[id];
+    }
+
+    long getEarliestCreatedTime(final String author) {
+        return valueOf(minCreatedTimes, author);
+    }
+
+    long getLatestCreatedTime(final String author) {
+        return valueOf(maxCreatedTimes, author);
+    }
+
+    long getEarliestModifiedTime(final String author) {
+        return valueOf(minModifiedTimes, author);
+    }
+
+    long getLatestModifiedTime(final String author) {
+        return valueOf(maxModifiedTimes, author);
+    }
+
+    private long valueOf(final long[] column, final String author) {
+        int id = authors.getId(author);
+        return id == AuthorDictionary.NULL_ID ? DocumentBatch.NULL_VALUE : column[id];
+    }
+
+    /**
+     * Summary{count documents,total,average,max,created earliest..latest,modified earliest..latest}, a missing
+     * statistic left empty
+     */
+    StringBuilder appendSummary(final StringBuilder stringBuilder, final String author) {
+        int id = authors.getId(author);
+        Validate.isTrue(id != AuthorDictionary.NULL_ID, "no documents of %s", author);
+
+        stringBuilder.append("Summary{").append(counts[id]).append(" documents,");
+        if (sizeCounts[id] > 0) {
+            DocumentFormatter.formatSize(totalSizes[id], stringBuilder).append(" total,");
+            DocumentFormatter.formatSize(totalSizes[id] / sizeCounts[id], stringBuilder).append(" average,");
+            DocumentFormatter.formatSize(maxSizes[id], stringBuilder).append(" max,");
+        } else {
+            stringBuilder.append(",,,");
+        }
+        appendSpan(stringBuilder.append("created "), minCreatedTimes[id], maxCreatedTimes[id]).append(',');
+        return appendSpan(stringBuilder.append("modified "), minModifiedTimes[id], maxModifiedTimes[id]).append('}');
+    }
+
+    private StringBuilder appendSpan(final StringBuilder stringBuilder, final long earliest, final long latest) {
+        if (latest != DocumentBatch.NULL_VALUE) {
+            documentFormatter.formatDate(earliest, stringBuilder).append("..");
+            documentFormatter.formatDate(latest, stringBuilder);
+        }
+        return stringBuilder;
+    }
+
+    /**
+     * summary-only report: the header and summary line of every author, in report order; no row is sorted or formatted
+     *
+     * @param appendable not null
+     * @throws IOException
+     */
+    void writeSummary(final Appendable appendable) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        StringBuilder line = new StringBuilder();
+        for (String author : getAuthors()) {
+            reportWriter.writeHeader(author);
+            line.setLength(0);
+            reportWriter.writeRendered(appendSummary(line, author).append('\n'));
+        }
+        reportWriter.flush();
+    }
+
+    /**
+     * the report with the summary line of every author under its header, rolled up in the grouping pass
+     *
+     * @param documents  every one has a formatter
+     * @param appendable not null
+     * @return the rollup of the documents
+     * @throws IOException
+     */
+    static DocumentRollup writeDocumentsReport(final Collection<Document> documents, final DocumentFormatter documentFormatter,
+                                               final Appendable appendable) throws IOException {
+        DocumentRollup rollup = new DocumentRollup(documentFormatter);
+        LinkedHashMap<String, List<Document>> groups = Document.groupDocuments(documents, rollup);
+        long start = DocumentMetrics.start();
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, List<Document>> group : groups.entrySet()) {
+            reportWriter.writeHeader(group.getKey());
+            line.setLength(0);
+            reportWriter.writeRendered(rollup.appendSummary(line, group.getKey()).append('\n'));
+            for (Document document : group.getValue()) {
+                reportWriter.writeRow(document);
+            }
+        }
+        reportWriter.flush();
+        DocumentMetrics.FORMATTING.recordSince(start);
+        DocumentMetrics.REPORTS.increment();
+        return rollup;
+    }
+
+    StringBuilder printSummaryHelper() {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeSummary(stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+}
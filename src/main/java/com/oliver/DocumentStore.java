@@ -0,0 +1,430 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Author: Oliver
+ * <p>
+ * memory-mapped, columnar binary file of documents, so a restart maps a file instead of parsing text.
+ * <p>
+ * File layout (big endian, every section starts 8 byte aligned):
+ * header    long magic, int version, int flags, long rowCount, int authorCount, int unused, then the offsets of the
+ * sections below and the heap length (128 bytes)
+ * authors   per author: int length of the UTF-8 bytes, the bytes
+ * longs     sizeInBytes, createdTime, modifiedTime (DocumentBatch.NULL_VALUE when missing), name start, description start
+ * ints      createdBy id, lastModifiedBy id (-1 for null), name length, description length (-1 for null)
+ * heap      the UTF-8 bytes of all the names and descriptions, starts are relative to the heap
+ * <p>
+ * rows are written in report order, so the report is a single sequential scan. Only the author dictionary is read
+ * when the store is opened; every other field is read from the mapping when it is asked for.
+ * Files larger than 2 GB are mapped in segments.
+ */
+@Slf4j
+class DocumentStore implements Closeable {
+    // constants
+    static final long MAGIC = 0x56454556444f4331L;// "VEEVDOC1"
+    static final int VERSION = 1;
+    static final int FLAG_REPORT_ORDER = 1;
+    private static final int HEADER_SIZE = 128;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    // section indexes in the header
+    private static final int AUTHORS = 0;
+    private static final int SIZES = 1;
+    private static final int CREATED_TIMES = 2;
+    private static final int MODIFIED_TIMES = 3;
+    private static final int NAME_STARTS = 4;
+    private static final int DESCRIPTION_STARTS = 5;
+    private static final int CREATED_BY_IDS = 6;
+    private static final int LAST_MODIFIED_BY_IDS = 7;
+    private static final int NAME_LENGTHS = 8;
+    private static final int DESCRIPTION_LENGTHS = 9;
+    private static final int HEAP = 10;
+    private static final int SECTION_COUNT = 11;
+    // Utility
+    private final DocumentFormatter documentFormatter;
+    private final FileChannel channel;
+    private final MappedRegion region;
+    // layout
+    private final int size;
+    private final long[] sections;
+    private final String[] authors;
+
+    private DocumentStore(final FileChannel channel, final DocumentFormatter documentFormatter) throws IOException {
+        this.channel = channel;
+        this.documentFormatter = documentFormatter;
+        this.region = new MappedRegion(channel);
+
+        // Validate preconditions
+        Validate.isTrue(region.length() >= HEADER_SIZE && region.getLong(0) == MAGIC, "not a document store");
+        Validate.isTrue(region.getInt(8) == VERSION, "unsupported document store version: %d", region.getInt(8));
+        Validate.isTrue((region.getInt(12) & FLAG_REPORT_ORDER) != 0, "rows are not in report order");
+        long rowCount = region.getLong(16);
+        Validate.isTrue(rowCount <= Integer.MAX_VALUE, "too many rows: %d", rowCount);
+
+        this.size = (int) rowCount;
+        int authorCount = region.getInt(24);
+        this.sections = new long[SECTION_COUNT + 1];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = region.getLong(32 + 8L * i);
+        }
+        Validate.isTrue(sections[HEAP] + sections[SECTION_COUNT] <= region.length(), "truncated document store");
+
+        this.authors = new String[authorCount];
+        long position = sections[AUTHORS];
+        for (int id = 0; id < authorCount; id++) {
+            int length = region.getInt(position);
+            authors[id] = region.getString(position + 4, length);
+            position += 4 + length;
+        }
+    }
+
+    /**
+     * maps the file, reading only the header and the author dictionary
+     *
+     * @param path              written by write()
+     * @param documentFormatter used for the report
+     */
+    static DocumentStore open(final Path path, final DocumentFormatter documentFormatter) throws IOException {
+        // Validate preconditions
+        Validate.notNull(path);
+        Validate.notNull(documentFormatter);
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            DocumentStore store = new DocumentStore(channel, documentFormatter);
+            log.debug("open(): {} rows, {} authors from {}", store.size, store.authors.length, path);
+            return store;
+        } catch (RuntimeException | IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static void write(final Collection<Document> documents, final DocumentFormatter documentFormatter, final Path path) throws IOException {
+        write(DocumentBatch.fromDocuments(documents, documentFormatter), path);
+    }
+
+    /**
+     * writes the batch in report order, replacing the file
+     *
+     * @param batch not null
+     * @param path  the file to write
+     */
+    static void write(final DocumentBatch batch, final Path path) throws IOException {
+        // Validate preconditions
+        Validate.notNull(batch);
+        Validate.notNull(path);
+
+        int[] order = batch.reportOrder();
+        long n = order.length;
+        long[] sections = new long[SECTION_COUNT + 1];
+        sections[AUTHORS] = HEADER_SIZE;
+        long authorsLength = 0;
+        byte[][] authorBytes = new byte[batch.getAuthorCount()][];
+        for (int id = 0; id < authorBytes.length; id++) {
+            authorBytes[id] = batch.getAuthor(id).getBytes(StandardCharsets.UTF_8);
+            authorsLength += 4 + authorBytes[id].length;
+        }
+        sections[SIZES] = align(sections[AUTHORS] + authorsLength);
+        sections[CREATED_TIMES] = sections[SIZES] + 8 * n;
+        sections[MODIFIED_TIMES] = sections[CREATED_TIMES] + 8 * n;
+        sections[NAME_STARTS] = sections[MODIFIED_TIMES] + 8 * n;
+        sections[DESCRIPTION_STARTS] = sections[NAME_STARTS] + 8 * n;
+        sections[CREATED_BY_IDS] = sections[DESCRIPTION_STARTS] + 8 * n;
+        sections[LAST_MODIFIED_BY_IDS] = sections[CREATED_BY_IDS] + 4 * n;
+        sections[NAME_LENGTHS] = sections[LAST_MODIFIED_BY_IDS] + 4 * n;
+        sections[DESCRIPTION_LENGTHS] = sections[NAME_LENGTHS] + 4 * n;
+        sections[HEAP] = align(sections[DESCRIPTION_LENGTHS] + 4 * n);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // every section streams through its own buffer at its own position
+            ColumnWriter[] columns = new ColumnWriter[SECTION_COUNT];
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                columns[i] = new ColumnWriter(channel, sections[i]);
+            }
+            for (byte[] bytes : authorBytes) {
+                columns[AUTHORS].putInt(bytes.length);
+                columns[AUTHORS].put(bytes);
+            }
+            long heapLength = 0;
+            for (int row : order) {
+                columns[SIZES].putLong(batch.getSizeInBytes(row));
+                columns[CREATED_TIMES].putLong(batch.getCreatedTime(row));
+                columns[MODIFIED_TIMES].putLong(batch.getModifiedTime(row));
+                columns[CREATED_BY_IDS].putInt(batch.getCreatedById(row));
+                columns[LAST_MODIFIED_BY_IDS].putInt(batch.getLastModifiedById(row));
+                heapLength = putString(columns[HEAP], columns[NAME_STARTS], columns[NAME_LENGTHS], batch.getName(row), heapLength);
+                heapLength = putString(columns[HEAP], columns[DESCRIPTION_STARTS], columns[DESCRIPTION_LENGTHS], batch.getDescription(row), heapLength);
+            }
+            for (ColumnWriter column : columns) {
+                column.flush();
+            }
+            sections[SECTION_COUNT] = heapLength;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(VERSION).putInt(FLAG_REPORT_ORDER).putLong(n).putInt(authorBytes.length).putInt(0);
+            for (long section : sections) {
+                header.putLong(section);
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            log.debug("write(): {} rows, {} heap bytes to {}", n, heapLength, path);
+        }
+    }
+
+    private static long putString(final ColumnWriter heap, final ColumnWriter starts, final ColumnWriter lengths,
+                                  final String value, final long heapLength) throws IOException {
+        if (value == null) {
+            starts.putLong(heapLength);
+            lengths.putInt(-1);
+            return heapLength;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        starts.putLong(heapLength);
+        lengths.putInt(bytes.length);
+        heap.put(bytes);
+        return heapLength + bytes.length;
+    }
+
+    private static long align(final long position) {
+        return (position + 7) & ~7L;
+    }
+
+    // getters, reading straight from the mapping
+    int size() {
+        return size;
+    }
+
+    DocumentFormatter getDocumentFormatter() {
+        return documentFormatter;
+    }
+
+    int getAuthorCount() {
+        return authors.length;
+    }
+
+    String getAuthor(final int id) {
+        return id == DocumentBatch.NULL_ID ? null : authors[id];
+    }
+
+    int getCreatedById(final int row) {
+        return region.getInt(sections[CREATED_BY_IDS] + 4L * checkRow(row));
+    }
+
+    String getCreatedBy(final int row) {
+        return getAuthor(getCreatedById(row));
+    }
+
+    String getLastModifiedBy(final int row) {
+        return getAuthor(region.getInt(sections[LAST_MODIFIED_BY_IDS] + 4L * checkRow(row)));
+    }
+
+    String getName(final int row) {
+        return getString(NAME_STARTS, NAME_LENGTHS, row);
+    }
+
+    String getDescription(final int row) {
+        return getString(DESCRIPTION_STARTS, DESCRIPTION_LENGTHS, row);
+    }
+
+    long getSizeInBytes(final int row) {
+        return region.getLong(sections[SIZES] + 8L * checkRow(row));
+    }
+
+    long getCreatedTime(final int row) {
+        return region.getLong(sections[CREATED_TIMES] + 8L * checkRow(row));
+    }
+
+    long getModifiedTime(final int row) {
+        return region.getLong(sections[MODIFIED_TIMES] + 8L * checkRow(row));
+    }
+
+    private String getString(final int startsSection, final int lengthsSection, final int row) {
+        int length = region.getInt(sections[lengthsSection] + 4L * checkRow(row));
+        if (length < 0) {
+            return null;
+        }
+        return region.getString(sections[HEAP] + region.getLong(sections[startsSection] + 8L * row), length);
+    }
+
+    private int checkRow(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    Document getDocument(final int row) {
+        Document document = new Document(getCreatedBy(row), getName(row), getDescription(row),
+                box(getSizeInBytes(row)), box(getCreatedTime(row)), box(getModifiedTime(row)));
+        document.lastModifiedBy = getLastModifiedBy(row);
+        document.documentFormatter = documentFormatter;
+        return document;
+    }
+
+    /**
+     * copies every row onto the heap, in report order
+     */
+    DocumentBatch toBatch() {
+        DocumentBatch batch = new DocumentBatch(documentFormatter, size);
+        for (int row = 0; row < size; row++) {
+            batch.add(getCreatedBy(row), getName(row), getDescription(row), getLastModifiedBy(row),
+                    getSizeInBytes(row), getCreatedTime(row), getModifiedTime(row));
+        }
+        return batch;
+    }
+
+    private static Long box(final long value) {
+        return value == DocumentBatch.NULL_VALUE ? null : value;
+    }
+
+    StringBuilder appendBeautify(final StringBuilder stringBuilder, final int row) {
+        long sizeInBytes = getSizeInBytes(row);
+        long createdTime = getCreatedTime(row);
+        long modifiedTime = getModifiedTime(row);
+        return Document.appendBeautify(stringBuilder, documentFormatter, getName(row), getDescription(row),
+                sizeInBytes != DocumentBatch.NULL_VALUE, sizeInBytes,
+                createdTime != DocumentBatch.NULL_VALUE, createdTime,
+                modifiedTime != DocumentBatch.NULL_VALUE, modifiedTime);
+    }
+
+    /**
+     * streams the same report as Document.printDocumentsReportHelper() produced for the documents written,
+     * a sequential scan of the file
+     *
+     * @param appendable not null
+     * @throws IOException
+     */
+    void writeDocumentsReport(final Appendable appendable) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        int previousId = DocumentBatch.NULL_ID;
+        for (int row = 0; row < size; row++) {
+            int id = getCreatedById(row);
+            if (id != previousId) {
+                reportWriter.writeHeader(authors[id]);
+                previousId = id;
+            }
+            reportWriter.writeRow(this, row);
+        }
+        reportWriter.flush();
+    }
+
+    /**
+     * closes the file; the mapping itself goes away when it is garbage collected
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * a read only mapping of a whole file, in segments of at most 1 GB so files over 2 GB work as well.
+     * Sections are 8 byte aligned and the segments a power of 2 long, so an aligned long or int never straddles two
+     * segments; only strings can, and those are copied out in pieces.
+     */
+    static final class MappedRegion {
+        // constants
+        private static final int SEGMENT_SHIFT = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+        // the mapping
+        private final MappedByteBuffer[] segments;
+        private final long length;
+
+        MappedRegion(final FileChannel channel) throws IOException {
+            this.length = channel.size();
+            int segmentCount = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long offset = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(1L << SEGMENT_SHIFT, length - offset));
+            }
+        }
+
+        long length() {
+            return length;
+        }
+
+        long getLong(final long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+        }
+
+        int getInt(final long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+        }
+
+        String getString(final long position, final int length) {
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                long at = position + copied;
+                ByteBuffer segment = segments[(int) (at >>> SEGMENT_SHIFT)].duplicate();
+                segment.position((int) (at & SEGMENT_MASK));
+                int count = Math.min(length - copied, segment.remaining());
+                segment.get(bytes, copied, count);
+                copied += count;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * buffered, positional writes of one section
+     */
+    private static final class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        private long position;
+
+        ColumnWriter(final FileChannel channel, final long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void putLong(final long value) throws IOException {
+            if (buffer.remaining() < 8) {
+                flush();
+            }
+            buffer.putLong(value);
+        }
+
+        void putInt(final int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void put(final byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int count = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * external merge sort for document sets larger than the heap.
+ * <p>
+ * documents are read in runs of runSize, every run is sorted by (lower cased createdBy, createdBy, createdTime, input position)
+ * and spilled to a temp file, then the runs are k-way merged straight into a DocumentReportWriter.
+ * Only one run plus one buffered record per spill file is in memory at any time.
+ * The report is the same as Document.printDocumentsReportHelper() produces for the same input.
+ */
+@Slf4j
+class ExternalDocumentSorter {
+    // constants
+    static final int DEFAULT_RUN_SIZE = 100_000;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final String TEMP_FILE_PREFIX = "veev-run-";
+    // settings
+    private final DocumentFormatter documentFormatter;
+    private final int runSize;
+    private final Path tempDirectory;
+
+    ExternalDocumentSorter(final DocumentFormatter documentFormatter) {
+        this(documentFormatter, DEFAULT_RUN_SIZE, null);
+    }
+
+    /**
+     * @param documentFormatter attached to the documents read back from the spill files
+     * @param runSize           the number of documents sorted in memory per run
+     * @param tempDirectory     where the runs are spilled, null for the default temp directory
+     */
+    ExternalDocumentSorter(final DocumentFormatter documentFormatter, final int runSize, final Path tempDirectory) {
+        // Validate preconditions
+        Validate.notNull(documentFormatter);
+        Validate.isTrue(runSize > 0);
+
+        this.documentFormatter = documentFormatter;
+        this.runSize = runSize;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * streams the report of all the documents, spilling to disk when there is more than one run
+     *
+     * @param documents  read exactly once
+     * @param appendable not null
+     * @throws IOException
+     */
+    void writeDocumentsReport(final Iterator<Document> documents, final Appendable appendable) throws IOException {
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        List<Path> runs = new ArrayList<>();
+        try {
+            long sequence = 0;
+            // one case folded key per author, shared by all its sort entries
+            AuthorDictionary authors = new AuthorDictionary();
+            List<SortEntry> run = new ArrayList<>(Math.min(runSize, DEFAULT_RUN_SIZE));
+            while (documents.hasNext()) {
+                Document document = documents.next();
+                run.add(new SortEntry(document, sequence++, authors.getFoldedKey(authors.intern(document.getCreatedBy()))));
+                if (run.size() == runSize && documents.hasNext()) {
+                    runs.add(spill(run));
+                    run.clear();
+                }
+            }
+
+            if (runs.isEmpty()) {
+                // everything fitted in one run, no need to touch the disk
+                run.sort(SORT_ENTRY_ORDER);
+                String previousKey = null;
+                for (SortEntry entry : run) {
+                    previousKey = writeDocument(reportWriter, previousKey, entry.document);
+                }
+            } else {
+                if (!run.isEmpty()) {
+                    runs.add(spill(run));
+                    run.clear();
+                }
+                merge(runs, reportWriter);
+            }
+            reportWriter.flush();
+        } finally {
+            for (Path path : runs) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Path spill(final List<SortEntry> run) throws IOException {
+        run.sort(SORT_ENTRY_ORDER);
+        Path path = tempDirectory == null ? Files.createTempFile(TEMP_FILE_PREFIX, ".bin") : Files.createTempFile(tempDirectory, TEMP_FILE_PREFIX, ".bin");
+        log.debug("spill(): {} documents to {}", run.size(), path);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER_SIZE))) {
+            for (SortEntry entry : run) {
+                DocumentRecordCodec.write(out, entry.document, entry.sequence);
+            }
+        }
+        return path;
+    }
+
+    private void merge(final List<Path> runs, final DocumentReportWriter reportWriter) throws IOException {
+        log.debug("merge(): {} runs", runs.size());
+        PriorityQueue<DocumentRecordCodec.RecordReader> heap = new PriorityQueue<>(runs.size(), RECORD_READER_ORDER);
+        List<DocumentRecordCodec.RecordReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (Path path : runs) {
+                DocumentRecordCodec.RecordReader reader = new DocumentRecordCodec.RecordReader(
+                        new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE)), documentFormatter);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+
+            String previousKey = null;
+            while (!heap.isEmpty()) {
+                DocumentRecordCodec.RecordReader reader = heap.poll();
+                previousKey = writeDocument(reportWriter, previousKey, reader.document);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+        } finally {
+            for (DocumentRecordCodec.RecordReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * writes the group header whenever createdBy changes, then the row
+     *
+     * @return the createdBy of the document just written
+     */
+    static String writeDocument(final DocumentReportWriter reportWriter, final String previousKey, final Document document) throws IOException {
+        String key = document.getCreatedBy();
+        if (previousKey == null || !previousKey.equals(key)) {
+            reportWriter.writeHeader(key);
+        }
+        reportWriter.writeRow(document);
+        return key;
+    }
+
+    // the report order, the input position makes it total and stable
+    private static final Comparator<SortEntry> SORT_ENTRY_ORDER = (o1, o2) -> compare(o1.foldedKey, o1.document, o1.sequence, o2.foldedKey, o2.document, o2.sequence);
+    private static final Comparator<DocumentRecordCodec.RecordReader> RECORD_READER_ORDER = (o1, o2) -> compare(o1.foldedKey, o1.document, o1.sequence, o2.foldedKey, o2.document, o2.sequence);
+
+    private static int compare(final String foldedKey1, final Document document1, final long sequence1,
+                               final String foldedKey2, final Document document2, final long sequence2) {
+        int result = foldedKey1.compareTo(foldedKey2);
+        if (result == 0) {
+            result = document1.createdBy.compareTo(document2.createdBy);
+        }
+        if (result == 0) {
+            result = Document.CREATED_TIME_ORDER.compare(document1, document2);
+        }
+        if (result == 0) {
+            result = Long.compare(sequence1, sequence2);
+        }
+        return result;
+    }
+
+    private static class SortEntry {
+        final Document document;
+        final long sequence;
+        final String foldedKey;
+
+        SortEntry(final Document document, final long sequence, final String foldedKey) {
+            this.document = document;
+            this.sequence = sequence;
+            this.foldedKey = foldedKey;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.oliver;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * an immutable DocumentBatch with secondary indexes, for reports on part of the documents.
+ * <p>
+ * createdTime, modifiedTime and sizeInBytes each get a sorted index: the rows radix sorted by the value, next to the
+ * sorted values, so a range is two binary searches. The author index is the report order itself, cut into one slice
+ * per author. A query starts from its most selective constraint (the shortest range, or the fewest author rows), checks
+ * the other constraints on those rows only and puts the matches back in report order by their report position, so it
+ * costs O(log n + candidates) instead of a scan of every document. A missing value never matches a range.
+ * <p>
+ * e.g. the report of what Andy created in 2013 that is over 1 mb:
+ * collection.writeDocumentsReport(IndexedDocumentCollection.Query.all().byAuthors("Andy")
+ * .createdBetween(start2013, end2013).sizeBetween(1 << 20, Long.MAX_VALUE), appendable);
+ */
+@Slf4j
+class IndexedDocumentCollection {
+    // the documents
+    @Getter
+    private final DocumentBatch batch;
+    // the rows in report order, and where every row is in it
+    private final int[] reportOrder;
+    private final long[] reportPositions;
+    // the rows of rank r are reportOrder[authorStarts[r], authorStarts[r + 1])
+    private final int[] authorRanks;
+    private final int[] authorStarts;
+    // range indexes
+    private final RangeIndex createdTimes;
+    private final RangeIndex modifiedTimes;
+    private final RangeIndex sizesInBytes;
+
+    /**
+     * @param batch not modified afterwards; every createdBy not null
+     */
+    IndexedDocumentCollection(final DocumentBatch batch) {
+        // Validate preconditions
+        Validate.notNull(batch);
+        for (int row = 0; row < batch.size(); row++) {
+            Validate.isTrue(batch.getCreatedById(row) != DocumentBatch.NULL_ID, "createdBy is the group key of the report");
+        }
+
+        this.batch = batch;
+        int size = batch.size();
+        this.reportOrder = batch.reportOrder();
+        this.reportPositions = new long[size];
+        for (int position = 0; position < size; position++) {
+            reportPositions[reportOrder[position]] = position;
+        }
+        this.authorRanks = batch.authorRanks();
+        this.authorStarts = new int[authorRanks.length + 1];
+        for (int row = 0; row < size; row++) {
+            authorStarts[authorRanks[batch.getCreatedById(row)] + 1]++;
+        }
+        for (int rank = 0; rank < authorRanks.length; rank++) {
+            authorStarts[rank + 1] += authorStarts[rank];
+        }
+
+        RadixSort radixSort = new RadixSort();
+        long[] column = new long[size];
+        for (int row = 0; row < size; row++) {
+            column[row] = batch.getCreatedTime(row);
+        }
+        this.createdTimes = new RangeIndex(column, radixSort);
+        for (int row = 0; row < size; row++) {
+            column[row] = batch.getModifiedTime(row);
+        }
+        this.modifiedTimes = new RangeIndex(column, radixSort);
+        for (int row = 0; row < size; row++) {
+            column[row] = batch.getSizeInBytes(row);
+        }
+        this.sizesInBytes = new RangeIndex(column, radixSort);
+        log.debug("IndexedDocumentCollection(): {} documents, {} authors", size, authorRanks.length);
+    }
+
+    static IndexedDocumentCollection fromDocuments(final Collection<Document> documents, final DocumentFormatter documentFormatter) {
+        return new IndexedDocumentCollection(DocumentBatch.fromDocuments(documents, documentFormatter));
+    }
+
+    int size() {
+        return batch.size();
+    }
+
+    /**
+     * a sorted index of one long column, missing values (DocumentBatch.NULL_VALUE) first
+     */
+    private static final class RangeIndex {
+        private final int[] rows;
+        private final long[] values;
+        private final int firstValue;
+
+        private RangeIndex(final long[] column, final RadixSort radixSort) {
+            int size = column.length;
+            rows = new int[size];
+            for (int row = 0; row < size; row++) {
+                rows[row] = row;
+            }
+            radixSort.sort(rows, 0, size, column);
+            values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = column[rows[i]];
+            }
+            firstValue = lowerBound(values, 0, DocumentBatch.NULL_VALUE + 1);
+        }
+
+        /**
+         * @return the positions in rows of the values in [min, max], as {from, to}
+         */
+        private int[] range(final long min, final long max) {
+            if (min > max) {
+                return new int[]{0, 0};
+            }
+            int from = lowerBound(values, firstValue, min);
+            int to = max == Long.MAX_VALUE ? values.length : lowerBound(values, from, max + 1);
+            return new int[]{from, to};
+        }
+
+        private static int lowerBound(final long[] values, final int from, final long value) {
+            int low = from;
+            int high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * @return the rows matching the query, in report order
+     */
+    int[] select(final Query query) {
+        // Validate preconditions
+        Validate.notNull(query);
+
+        // #1. the authors asked for, as ranks
+        int[] ranks = null;
+        boolean[] isAuthor = null;
+        long authorRows = Long.MAX_VALUE;
+        if (query.authors != null) {
+            isAuthor = new boolean[batch.getAuthorCount()];
+            List<Integer> rankList = new ArrayList<>();
+            authorRows = 0;
+            for (String author : query.authors) {
+                int id = batch.getAuthorId(author);
+                if (id != DocumentBatch.NULL_ID && !isAuthor[id]) {
+                    isAuthor[id] = true;
+                    rankList.add(authorRanks[id]);
+                    authorRows += authorStarts[authorRanks[id] + 1] - authorStarts[authorRanks[id]];
+                }
+            }
+            ranks = rankList.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        // #2. the ranges asked for
+        int[] created = query.hasCreatedRange() ? createdTimes.range(query.createdFrom, query.createdTo) : null;
+        int[] modified = query.hasModifiedRange() ? modifiedTimes.range(query.modifiedFrom, query.modifiedTo) : null;
+        int[] sizes = query.hasSizeRange() ? sizesInBytes.range(query.sizeFrom, query.sizeTo) : null;
+
+        // #3. start from the fewest candidates
+        RangeIndex index = null;
+        int[] range = null;
+        long candidates = authorRows;
+        RangeIndex[] indexes = {createdTimes, modifiedTimes, sizesInBytes};
+        int[][] ranges = {created, modified, sizes};
+        for (int i = 0; i < indexes.length; i++) {
+            if (ranges[i] != null && ranges[i][1] - ranges[i][0] < candidates) {
+                index = indexes[i];
+                range = ranges[i];
+                candidates = range[1] - range[0];
+            }
+        }
+
+        int[] matches;
+        int count = 0;
+        if (index == null) {
+            // by author (or everything): the slices of the report order are already in report order
+            if (ranks == null) {
+                ranks = new int[authorRanks.length];
+                for (int rank = 0; rank < ranks.length; rank++) {
+                    ranks[rank] = rank;
+                }
+            }
+            matches = new int[(int) Math.min(authorRows, batch.size())];
+            for (int rank : ranks) {
+                for (int position = authorStarts[rank]; position < authorStarts[rank + 1]; position++) {
+                    int row = reportOrder[position];
+                    if (matches(row, query, null)) {
+                        matches[count++] = row;
+                    }
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+
+        matches = new int[range[1] - range[0]];
+        for (int i = range[0]; i < range[1]; i++) {
+            int row = index.rows[i];
+            if (matches(row, query, isAuthor)) {
+                matches[count++] = row;
+            }
+        }
+        // back to report order
+        new RadixSort().sort(matches, 0, count, reportPositions);
+        return Arrays.copyOf(matches, count);
+    }
+
+    private boolean matches(final int row, final Query query, final boolean[] isAuthor) {
+        return (isAuthor == null || isAuthor[batch.getCreatedById(row)])
+                && (!query.hasCreatedRange() || query.isInCreatedRange(batch.getCreatedTime(row)))
+                && (!query.hasModifiedRange() || query.isInModifiedRange(batch.getModifiedTime(row)))
+                && (!query.hasSizeRange() || query.isInSizeRange(batch.getSizeInBytes(row)));
+    }
+
+    int count(final Query query) {
+        return select(query).length;
+    }
+
+    /**
+     * the report of the matching documents, the same format as Document.printDocumentsReportHelper()
+     */
+    void writeDocumentsReport(final Query query, final Appendable appendable) throws IOException {
+        batch.writeDocumentsReport(appendable, select(query));
+    }
+
+    StringBuilder printDocumentsReportHelper(final Query query) {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeDocumentsReport(query, stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+
+    /**
+     * what to report: the conjunction of the constraints set, every range inclusive
+     */
+    @Getter
+    static final class Query {
+        // the ranges set by the builder methods, as bits; a set range never matches a missing value, even [MIN, MAX]
+        private static final int CREATED_RANGE = 1;
+        private static final int MODIFIED_RANGE = 2;
+        private static final int SIZE_RANGE = 4;
+        private static final Query ALL = new Query(null, 0, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE,
+                Long.MIN_VALUE, Long.MAX_VALUE);
+        // null for all the authors
+        private final Set<String> authors;
+        private final int ranges;
+        // createdTime and modifiedTime in epoch millis
+        private final long createdFrom;
+        private final long createdTo;
+        private final long modifiedFrom;
+        private final long modifiedTo;
+        private final long sizeFrom;
+        private final long sizeTo;
+
+        private Query(final Set<String> authors, final int ranges, final long createdFrom, final long createdTo,
+                      final long modifiedFrom, final long modifiedTo, final long sizeFrom, final long sizeTo) {
+            this.authors = authors;
+            this.ranges = ranges;
+            this.createdFrom = createdFrom;
+            this.createdTo = createdTo;
+            this.modifiedFrom = modifiedFrom;
+            this.modifiedTo = modifiedTo;
+            this.sizeFrom = sizeFrom;
+            this.sizeTo = sizeTo;
+        }
+
+        static Query all() {
+            return ALL;
+        }
+
+        Query byAuthors(final String... authors) {
+            Validate.noNullElements(authors);
+            return new Query(Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(authors))), ranges,
+                    createdFrom, createdTo, modifiedFrom, modifiedTo, sizeFrom, sizeTo);
+        }
+
+        Query createdBetween(final long from, final long to) {
+            return new Query(authors, ranges | CREATED_RANGE, from, to, modifiedFrom, modifiedTo, sizeFrom, sizeTo);
+        }
+
+        Query modifiedBetween(final long from, final long to) {
+            return new Query(authors, ranges | MODIFIED_RANGE, createdFrom, createdTo, from, to, sizeFrom, sizeTo);
+        }
+
+        Query sizeBetween(final long from, final long to) {
+            return new Query(authors, ranges | SIZE_RANGE, createdFrom, createdTo, modifiedFrom, modifiedTo, from, to);
+        }
+
+        boolean hasCreatedRange() {
+            return (ranges & CREATED_RANGE) != 0;
+        }
+
+        boolean hasModifiedRange() {
+            return (ranges & MODIFIED_RANGE) != 0;
+        }
+
+        boolean hasSizeRange() {
+            return (ranges & SIZE_RANGE) != 0;
+        }
+
+        private boolean isInCreatedRange(final long value) {
+            return value != DocumentBatch.NULL_VALUE && createdFrom <= value && value <= createdTo;
+        }
+
+        private boolean isInModifiedRange(final long value) {
+            return value != DocumentBatch.NULL_VALUE && modifiedFrom <= value && value <= modifiedTo;
+        }
+
+        private boolean isInSizeRange(final long value) {
+            return value != DocumentBatch.NULL_VALUE && sizeFrom <= value && value <= sizeTo;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+/**
+ * Author: Oliver
+ * <p>
+ * groups and formats the report across the cores of a ForkJoinPool.
+ * <p>
+ * the groups are cut into batches of at least batchSize documents, every batch is sorted and rendered by its own task,
+ * and the rendered batches are appended in report order, so the output is the same as the serial
+ * Document.printDocumentsReportHelper() produces. At most maxPendingBatches rendered batches wait to be appended at a time.
+ * A CompressedReportOutput target is told where every group of a batch starts, as DocumentReportWriter would.
+ */
+@Slf4j
+class ParallelDocumentReporter {
+    // constants
+    static final int DEFAULT_BATCH_SIZE = 1024;
+    // settings
+    private final ForkJoinPool forkJoinPool;
+    private final int batchSize;
+    private final int maxPendingBatches;
+
+    ParallelDocumentReporter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    ParallelDocumentReporter(final ForkJoinPool forkJoinPool) {
+        this(forkJoinPool, DEFAULT_BATCH_SIZE, forkJoinPool.getParallelism() * 4);
+    }
+
+    /**
+     * @param forkJoinPool      runs the grouping and the formatting
+     * @param batchSize         the minimum number of documents rendered by one task
+     * @param maxPendingBatches the maximum number of batches submitted but not yet appended
+     */
+    ParallelDocumentReporter(final ForkJoinPool forkJoinPool, final int batchSize, final int maxPendingBatches) {
+        // Validate preconditions
+        Validate.notNull(forkJoinPool);
+        Validate.isTrue(batchSize > 0);
+        Validate.isTrue(maxPendingBatches > 0);
+
+        this.forkJoinPool = forkJoinPool;
+        this.batchSize = batchSize;
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    /**
+     * @param documents
+     * @param appendable not null
+     * @throws IOException
+     */
+    void writeDocumentsReport(final List<Document> documents, final Appendable appendable) throws IOException {
+        // Validate preconditions
+        if (CollectionUtils.isEmpty(documents)) {
+            return;
+        }
+
+        // a parallel stream run from inside the pool forks into that pool rather than the common one
+        final List<Document> source = documents instanceof RandomAccess ? documents : new ArrayList<>(documents);
+        long start = DocumentMetrics.start();
+        Map<String, List<Document>> mapString2Documents = forkJoinPool.submit(() ->
+                source.parallelStream().collect(Collectors.groupingBy(Document::getCreatedBy))).join();
+        log.debug("mapString2Documents.keySet().size() = {}", mapString2Documents.keySet().size());
+        DocumentMetrics.GROUPING.recordSince(start);
+
+        // rank the keys on their precomputed case folded forms
+        start = DocumentMetrics.start();
+        AuthorDictionary authors = new AuthorDictionary();
+        for (String key : mapString2Documents.keySet()) {
+            authors.intern(key);
+        }
+        int[] ranks = authors.ranks();
+        String[] keys = new String[ranks.length];
+        for (int id = 0; id < ranks.length; id++) {
+            keys[ranks[id]] = authors.getName(id);
+        }
+
+        DocumentMetrics.SORTING.recordSince(start);
+
+        // render batches of groups ahead, append them strictly in key order;
+        // the per group sorts run inside the render tasks, so they are timed as formatting here
+        start = DocumentMetrics.start();
+        CompressedReportOutput compressedOutput = appendable instanceof CompressedReportOutput ? (CompressedReportOutput) appendable : null;
+        Deque<ForkJoinTask<RenderedBatch>> pending = new ArrayDeque<>();
+        List<String> batch = new ArrayList<>();
+        int batchDocuments = 0;
+        for (String key : keys) {
+            batch.add(key);
+            batchDocuments += mapString2Documents.get(key).size();
+            if (batchDocuments >= batchSize) {
+                if (pending.size() >= maxPendingBatches) {
+                    pending.poll().join().appendTo(appendable, compressedOutput);
+                }
+                pending.add(forkJoinPool.submit(renderTask(batch, mapString2Documents)));
+                batch = new ArrayList<>();
+                batchDocuments = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            pending.add(forkJoinPool.submit(renderTask(batch, mapString2Documents)));
+        }
+        while (!pending.isEmpty()) {
+            pending.poll().join().appendTo(appendable, compressedOutput);
+        }
+        if (appendable instanceof Flushable) {
+            ((Flushable) appendable).flush();
+        }
+        DocumentMetrics.FORMATTING.recordSince(start);
+        DocumentMetrics.REPORTS.increment();
+    }
+
+    private static Callable<RenderedBatch> renderTask(final List<String> keys, final Map<String, List<Document>> mapString2Documents) {
+        return () -> {
+            StringBuilder stringBuilder = new StringBuilder();
+            DocumentReportWriter reportWriter = new DocumentReportWriter(stringBuilder);
+            int[] groupStarts = new int[keys.size()];
+            RadixSort radixSort = new RadixSort();
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                groupStarts[i] = stringBuilder.length();
+                List<Document> group = mapString2Documents.get(key);
+                // groupingBy keeps the encounter order, so this stable sort ties the same way as the serial one
+                Document.sortByCreatedTime(group, radixSort);
+                try {
+                    reportWriter.writeGroup(key, group);
+                    if (i == keys.size() - 1) {
+                        // counts the chars as emitted, the append step only copies them on
+                        reportWriter.flush();
+                    }
+                } catch (IOException e) {
+                    // a StringBuilder never throws
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return new RenderedBatch(keys, groupStarts, stringBuilder.toString());
+        };
+    }
+
+    /**
+     * the text of a batch of groups, and where each of them starts in it
+     */
+    private static final class RenderedBatch {
+        private final List<String> keys;
+        private final int[] groupStarts;
+        private final String text;
+
+        private RenderedBatch(final List<String> keys, final int[] groupStarts, final String text) {
+            this.keys = keys;
+            this.groupStarts = groupStarts;
+            this.text = text;
+        }
+
+        private void appendTo(final Appendable appendable, final CompressedReportOutput compressedOutput) throws IOException {
+            if (compressedOutput == null) {
+                appendable.append(text);
+                return;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                compressedOutput.startGroup(keys.get(i));
+                compressedOutput.append(text, groupStarts[i], i + 1 < keys.size() ? groupStarts[i + 1] : text.length());
+            }
+        }
+    }
+}
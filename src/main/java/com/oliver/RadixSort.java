@@ -0,0 +1,108 @@
+package com.oliver;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.Arrays;
+
+/**
+ * Author: Oliver
+ * <p>
+ * stable LSD radix sort of row indexes by a primitive long key, e.g. createdTime in epoch millis.
+ * <p>
+ * the keys are copied next to the rows once, with the sign bit flipped so signed order becomes unsigned order, then
+ * sorted 8 bits per pass. One counting pass builds the histograms of all 8 digits, and every digit that is the same for
+ * all rows (the high bytes of timestamps from the same decades, for instance) is skipped, so real timestamps take
+ * about 5 passes of O(n). Short ranges go to DocumentBatch.mergeSort(), which wins below a few hundred rows.
+ * <p>
+ * the scratch buffers are kept between calls, so sorting every group of a batch allocates once. Not thread safe.
+ */
+class RadixSort {
+    // constants
+    static final int MIN_RADIX_LENGTH = 256;
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int DIGITS = Long.SIZE / DIGIT_BITS;
+    // scratch
+    private int[] rows = new int[0];
+    private int[] rowsScratch = new int[0];
+    private long[] keys = new long[0];
+    private long[] keysScratch = new long[0];
+    private final int[][] counts = new int[DIGITS][RADIX];
+    private int[] mergeScratch = new int[0];
+
+    /**
+     * sorts rows[from, to) by keys[row] ascending; rows with equal keys keep their order
+     *
+     * @param rows indexes into keys
+     * @param keys the key of every row
+     */
+    void sort(final int[] rows, final int from, final int to, final long[] keys) {
+        // Validate preconditions
+        Validate.isTrue(0 <= from && from <= to && to <= rows.length);
+
+        int length = to - from;
+        if (length < MIN_RADIX_LENGTH) {
+            if (mergeScratch.length < to) {
+                mergeScratch = new int[rows.length];
+            }
+            DocumentBatch.mergeSort(rows, mergeScratch, from, to, keys);
+            return;
+        }
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            int row = rows[from + i];
+            this.rows[i] = row;
+            this.keys[i] = keys[row] ^ Long.MIN_VALUE;
+        }
+        sortCopied(length);
+        System.arraycopy(this.rows, 0, rows, from, length);
+    }
+
+    private void sortCopied(final int length) {
+        for (int[] count : counts) {
+            Arrays.fill(count, 0);
+        }
+        for (int i = 0; i < length; i++) {
+            long key = keys[i];
+            for (int digit = 0; digit < DIGITS; digit++) {
+                counts[digit][(int) (key >>> (digit * DIGIT_BITS)) & (RADIX - 1)]++;
+            }
+        }
+
+        for (int digit = 0; digit < DIGITS; digit++) {
+            int shift = digit * DIGIT_BITS;
+            int[] count = counts[digit];
+            if (count[(int) (keys[0] >>> shift) & (RADIX - 1)] == length) {
+                // every key has this digit
+                continue;
+            }
+            int sum = 0;
+            for (int bucket = 0; bucket < RADIX; bucket++) {
+                int bucketCount = count[bucket];
+                count[bucket] = sum;
+                sum += bucketCount;
+            }
+            for (int i = 0; i < length; i++) {
+                long key = keys[i];
+                int position = count[(int) (key >>> shift) & (RADIX - 1)]++;
+                keysScratch[position] = key;
+                rowsScratch[position] = rows[i];
+            }
+            long[] swapKeys = keys;
+            keys = keysScratch;
+            keysScratch = swapKeys;
+            int[] swapRows = rows;
+            rows = rowsScratch;
+            rowsScratch = swapRows;
+        }
+    }
+
+    private void ensureCapacity(final int length) {
+        if (rows.length < length) {
+            rows = new int[length];
+            rowsScratch = new int[length];
+            keys = new long[length];
+            keysScratch = new long[length];
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.oliver;
+
+import lombok.Getter;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * the shape of a report: the field to group by, and the keys that order every group.
+ * <p>
+ * a spec is applied in two steps. First every sort key is extracted once into a primitive long array, in a form where
+ * plain ascending long order is the wanted order: descending values are bit flipped, and a missing value becomes
+ * Long.MIN_VALUE (nulls first) or Long.MAX_VALUE (nulls last). Then the rows are grouped by a counting sort on the
+ * rank of their group key and sorted by the key arrays (radix sorted for a single key) and finally the row position,
+ * so equal rows keep their input order. No comparator ever unboxes a Long or compares Documents.
+ * <p>
+ * groups are in case insensitive order; documents without a group key (e.g. no lastModifiedBy) come last, under "null".
+ * DEFAULT produces the same report as Document.printDocumentsReportHelper().
+ */
+@Getter
+class ReportSpec {
+    // the same report as Document.printDocumentsReportHelper()
+    static final ReportSpec DEFAULT = new ReportSpec(GroupBy.CREATED_BY, SortKey.ascending(Field.CREATED_TIME));
+    private static final int UNMAPPED = -2;
+    // settings
+    private final GroupBy groupBy;
+    private final List<SortKey> sortKeys;
+
+    /**
+     * @param groupBy  the group key
+     * @param sortKeys the order within a group, most significant first; none keeps the input order
+     */
+    ReportSpec(final GroupBy groupBy, final SortKey... sortKeys) {
+        // Validate preconditions
+        Validate.notNull(groupBy);
+        Validate.noNullElements(sortKeys);
+
+        this.groupBy = groupBy;
+        this.sortKeys = Collections.unmodifiableList(Arrays.asList(sortKeys.clone()));
+    }
+
+    enum GroupBy {
+        CREATED_BY, LAST_MODIFIED_BY
+    }
+
+    enum Field {
+        CREATED_TIME, MODIFIED_TIME, SIZE_IN_BYTES
+    }
+
+    @Getter
+    static final class SortKey {
+        private final Field field;
+        private final boolean isDescending;
+        private final boolean isNullFirst;
+
+        SortKey(final Field field, final boolean isDescending, final boolean isNullFirst) {
+            Validate.notNull(field);
+            this.field = field;
+            this.isDescending = isDescending;
+            this.isNullFirst = isNullFirst;
+        }
+
+        // nulls first, like the default report
+        static SortKey ascending(final Field field) {
+            return new SortKey(field, false, true);
+        }
+
+        // nulls last
+        static SortKey descending(final Field field) {
+            return new SortKey(field, true, false);
+        }
+
+        SortKey withNullFirst(final boolean isNullFirst) {
+            return new SortKey(field, isDescending, isNullFirst);
+        }
+
+        /**
+         * @param value the raw value, DocumentBatch.NULL_VALUE when missing
+         * @return the value mapped so that ascending long order is the order of this key
+         */
+        long encode(final long value) {
+            if (value == DocumentBatch.NULL_VALUE) {
+                return isNullFirst ? Long.MIN_VALUE : Long.MAX_VALUE;
+            }
+            // ~value reverses the order of all longs without overflowing
+            return isDescending ? ~value : value;
+        }
+    }
+
+    /**
+     * @param documents  every one has a formatter
+     * @param appendable not null
+     */
+    void writeDocumentsReport(final Collection<Document> documents, final Appendable appendable) throws IOException {
+        // Validate preconditions
+        Validate.notNull(documents);
+
+        List<Document> rows = documents instanceof List && documents instanceof RandomAccess ? (List<Document>) documents : new ArrayList<>(documents);
+        int size = rows.size();
+        AuthorDictionary groups = new AuthorDictionary();
+        int[] groupIds = new int[size];
+        long[][] keys = new long[sortKeys.size()][size];
+        for (int row = 0; row < size; row++) {
+            Document document = rows.get(row);
+            groupIds[row] = groups.intern(groupBy == GroupBy.CREATED_BY ? document.createdBy : document.lastModifiedBy);
+            for (int k = 0; k < keys.length; k++) {
+                keys[k][row] = sortKeys.get(k).encode(valueOf(document, sortKeys.get(k).field));
+            }
+        }
+
+        int[] order = order(groupIds, groups, keys);
+        long start = DocumentMetrics.start();
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        int previousId = Integer.MIN_VALUE;
+        for (int row : order) {
+            if (groupIds[row] != previousId) {
+                previousId = groupIds[row];
+                reportWriter.writeHeader(String.valueOf(groups.getName(previousId)));
+            }
+            reportWriter.writeRow(rows.get(row));
+        }
+        reportWriter.flush();
+        DocumentMetrics.FORMATTING.recordSince(start);
+        DocumentMetrics.REPORTS.increment();
+    }
+
+    /**
+     * the report straight off the columns of a batch, the key arrays are the encoded columns
+     */
+    void writeDocumentsReport(final DocumentBatch batch, final Appendable appendable) throws IOException {
+        // Validate preconditions
+        Validate.notNull(batch);
+
+        int size = batch.size();
+        // map the batch author ids to group ids, so the ranks only cover the authors used as this group key
+        AuthorDictionary groups = new AuthorDictionary();
+        int[] groupIdOf = new int[batch.getAuthorCount()];
+        Arrays.fill(groupIdOf, UNMAPPED);
+        int[] groupIds = new int[size];
+        long[][] keys = new long[sortKeys.size()][size];
+        for (int row = 0; row < size; row++) {
+            int id = groupBy == GroupBy.CREATED_BY ? batch.getCreatedById(row) : batch.getLastModifiedById(row);
+            if (id != DocumentBatch.NULL_ID && groupIdOf[id] == UNMAPPED) {
+                groupIdOf[id] = groups.intern(batch.getAuthor(id));
+            }
+            groupIds[row] = id == DocumentBatch.NULL_ID ? AuthorDictionary.NULL_ID : groupIdOf[id];
+            for (int k = 0; k < keys.length; k++) {
+                keys[k][row] = sortKeys.get(k).encode(valueOf(batch, row, sortKeys.get(k).field));
+            }
+        }
+
+        int[] order = order(groupIds, groups, keys);
+        long start = DocumentMetrics.start();
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        int previousId = Integer.MIN_VALUE;
+        for (int row : order) {
+            if (groupIds[row] != previousId) {
+                previousId = groupIds[row];
+                reportWriter.writeHeader(String.valueOf(groups.getName(previousId)));
+            }
+            reportWriter.writeRow(batch, row);
+        }
+        reportWriter.flush();
+        DocumentMetrics.FORMATTING.recordSince(start);
+        DocumentMetrics.REPORTS.increment();
+    }
+
+    StringBuilder printDocumentsReportHelper(final Collection<Document> documents) {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeDocumentsReport(documents, stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder;
+    }
+
+    private static long valueOf(final Document document, final Field field) {
+        Long value;
+        switch (field) {
+            case CREATED_TIME:
+                value = document.createdTime;
+                break;
+            case MODIFIED_TIME:
+                value = document.modifiedTime;
+                break;
+            default:
+                value = document.sizeInBytes;
+        }
+        return value == null ? DocumentBatch.NULL_VALUE : value;
+    }
+
+    private static long valueOf(final DocumentBatch batch, final int row, final Field field) {
+        switch (field) {
+            case CREATED_TIME:
+                return batch.getCreatedTime(row);
+            case MODIFIED_TIME:
+                return batch.getModifiedTime(row);
+            default:
+                return batch.getSizeInBytes(row);
+        }
+    }
+
+    /**
+     * @param groupIds the group of every row, NULL_ID for a missing group key
+     * @param keys     the encoded sort keys, most significant first
+     * @return the rows in report order
+     */
+    static int[] order(final int[] groupIds, final AuthorDictionary groups, final long[][] keys) {
+        int size = groupIds.length;
+
+        // #1. group with a stable counting sort on the rank, the null group last
+        long start = DocumentMetrics.start();
+        int[] ranks = groups.ranks();
+        int nullRank = ranks.length;
+        int[] groupStarts = new int[ranks.length + 2];
+        for (int id : groupIds) {
+            groupStarts[(id == AuthorDictionary.NULL_ID ? nullRank : ranks[id]) + 1]++;
+        }
+        for (int rank = 0; rank <= nullRank; rank++) {
+            groupStarts[rank + 1] += groupStarts[rank];
+        }
+        int[] order = new int[size];
+        int[] next = Arrays.copyOf(groupStarts, nullRank + 1);
+        for (int row = 0; row < size; row++) {
+            int id = groupIds[row];
+            order[next[id == AuthorDictionary.NULL_ID ? nullRank : ranks[id]]++] = row;
+        }
+        DocumentMetrics.GROUPING.recordSince(start);
+
+        // #2. sort every group by the keys
+        start = DocumentMetrics.start();
+        if (keys.length > 0) {
+            RadixSort radixSort = new RadixSort();
+            int[] scratch = keys.length == 1 ? null : new int[size];
+            for (int rank = 0; rank <= nullRank; rank++) {
+                if (keys.length == 1) {
+                    radixSort.sort(order, groupStarts[rank], groupStarts[rank + 1], keys[0]);
+                } else {
+                    mergeSort(order, scratch, groupStarts[rank], groupStarts[rank + 1], keys);
+                }
+            }
+        }
+        DocumentMetrics.SORTING.recordSince(start);
+        return order;
+    }
+
+    /**
+     * DocumentBatch.mergeSort() on several key arrays, compared lexicographically
+     */
+    private static void mergeSort(final int[] rows, final int[] scratch, final int from, final int to, final long[][] keys) {
+        if (to - from < 2) {
+            return;
+        }
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && compare(keys, rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(rows, scratch, from, middle, keys);
+        mergeSort(rows, scratch, middle, to, keys);
+        if (compare(keys, rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(keys, scratch[left], scratch[right]) <= 0)) {
+                rows[i] = scratch[left++];
+            } else {
+                rows[i] = scratch[right++];
+            }
+        }
+    }
+
+    private static int compare(final long[][] keys, final int row1, final int row2) {
+        for (long[] key : keys) {
+            int result = Long.compare(key[row1], key[row2]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,248 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Author: Oliver
+ * <p>
+ * the report of a corpus split across worker processes: every worker sorts its shard into a partial report file, then
+ * one k-way merge streams the partial files into the final report.
+ * <p>
+ * a partial file is sorted by (case folded createdBy, createdBy, createdTime) and holds every author once, ahead of its
+ * documents, so the merge folds an author once per shard instead of once per row. The merged report is the same as
+ * Document.printDocumentsReportHelper() produces for the shards concatenated in the order they are given to the merge.
+ * Memory during the merge is one buffered document per shard.
+ * <p>
+ * Partial file layout (DataOutput, big endian; str is int length of the UTF-8 bytes, -1 for null, then the bytes):
+ * header  long magic, int version, int groupCount, long documentCount
+ * group   str createdBy, int documentCount, then per document in createdTime order:
+ * byte nullMask (bit 0 sizeInBytes, bit 1 createdTime, bit 2 modifiedTime are null),
+ * str name, description, lastModifiedBy, long sizeInBytes, createdTime, modifiedTime (only the ones that are not null)
+ * <p>
+ * Command line, e.g. one worker per shard and the merge at the end:
+ * java -cp veev.jar com.oliver.ShardedDocumentReporter shard shard-0.csv shard-0.bin
+ * java -cp veev.jar com.oliver.ShardedDocumentReporter merge report.txt shard-0.bin shard-1.bin ...
+ */
+@Slf4j
+class ShardedDocumentReporter {
+    // constants
+    static final long MAGIC = 0x5645455650525431L;// "VEEVPRT1"
+    static final int VERSION = 1;
+    private static final int NULL_SIZE = 1;
+    private static final int NULL_CREATED_TIME = 1 << 1;
+    private static final int NULL_MODIFIED_TIME = 1 << 2;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private ShardedDocumentReporter() {
+    }
+
+    /**
+     * sorts one shard into a partial report file
+     *
+     * @param documents every createdBy not null
+     * @param path      created or replaced
+     * @throws IOException
+     */
+    static void writePartial(final Collection<Document> documents, final Path path) throws IOException {
+        // Validate preconditions
+        Validate.notNull(documents);
+        Validate.notNull(path);
+
+        LinkedHashMap<String, List<Document>> groups = Document.groupDocuments(documents);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER_SIZE))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(groups.size());
+            out.writeLong(documents.size());
+            for (Map.Entry<String, List<Document>> group : groups.entrySet()) {
+                DocumentRecordCodec.writeString(out, group.getKey());
+                out.writeInt(group.getValue().size());
+                for (Document document : group.getValue()) {
+                    write(out, document);
+                }
+            }
+        }
+        log.debug("writePartial(): {} documents, {} authors to {}", documents.size(), groups.size(), path);
+    }
+
+    private static void write(final DataOutput out, final Document document) throws IOException {
+        int nullMask = (document.sizeInBytes == null ? NULL_SIZE : 0)
+                | (document.createdTime == null ? NULL_CREATED_TIME : 0)
+                | (document.modifiedTime == null ? NULL_MODIFIED_TIME : 0);
+        out.writeByte(nullMask);
+        DocumentRecordCodec.writeString(out, document.name);
+        DocumentRecordCodec.writeString(out, document.description);
+        DocumentRecordCodec.writeString(out, document.lastModifiedBy);
+        if (document.sizeInBytes != null) {
+            out.writeLong(document.sizeInBytes);
+        }
+        if (document.createdTime != null) {
+            out.writeLong(document.createdTime);
+        }
+        if (document.modifiedTime != null) {
+            out.writeLong(document.modifiedTime);
+        }
+    }
+
+    /**
+     * k-way merges the partial files into the report
+     *
+     * @param partials          in shard order, which decides the order of documents created at the same time
+     * @param documentFormatter formats the rows
+     * @param appendable        not null
+     * @return the number of documents written
+     * @throws IOException
+     */
+    static long mergePartials(final List<Path> partials, final DocumentFormatter documentFormatter, final Appendable appendable) throws IOException {
+        // Validate preconditions
+        Validate.noNullElements(partials);
+        Validate.notNull(documentFormatter);
+        Validate.notNull(appendable);
+
+        DocumentReportWriter reportWriter = new DocumentReportWriter(appendable);
+        PriorityQueue<PartialReader> heap = new PriorityQueue<>(Math.max(1, partials.size()), PARTIAL_READER_ORDER);
+        List<PartialReader> readers = new ArrayList<>(partials.size());
+        long written = 0;
+        try {
+            for (int shard = 0; shard < partials.size(); shard++) {
+                PartialReader reader = new PartialReader(partials.get(shard), shard, documentFormatter);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+
+            String previousKey = null;
+            while (!heap.isEmpty()) {
+                PartialReader reader = heap.poll();
+                previousKey = ExternalDocumentSorter.writeDocument(reportWriter, previousKey, reader.document);
+                written++;
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+            reportWriter.flush();
+        } finally {
+            for (PartialReader reader : readers) {
+                reader.close();
+            }
+        }
+        log.debug("mergePartials(): {} documents from {} shards", written, partials.size());
+        return written;
+    }
+
+    // the report order, the shard number keeps documents created at the same time in shard order
+    private static final Comparator<PartialReader> PARTIAL_READER_ORDER = (o1, o2) -> {
+        int result = o1.foldedKey.compareTo(o2.foldedKey);
+        if (result == 0) {
+            result = o1.createdBy.compareTo(o2.createdBy);
+        }
+        if (result == 0) {
+            result = Document.CREATED_TIME_ORDER.compare(o1.document, o2.document);
+        }
+        return result != 0 ? result : Integer.compare(o1.shard, o2.shard);
+    };
+
+    /**
+     * reads the documents of one partial file back, one at a time
+     */
+    private static final class PartialReader implements Closeable {
+        private final DataInputStream in;
+        private final int shard;
+        private final DocumentFormatter documentFormatter;
+        private int groupsLeft;
+        private int documentsLeft;
+        // current group and document
+        private String createdBy;
+        private String foldedKey;
+        private Document document;
+
+        private PartialReader(final Path path, final int shard, final DocumentFormatter documentFormatter) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE));
+            this.shard = shard;
+            this.documentFormatter = documentFormatter;
+            try {
+                Validate.isTrue(in.readLong() == MAGIC, "not a partial report: %s", path);
+                int version = in.readInt();
+                Validate.isTrue(version == VERSION, "unsupported partial report version: %d", version);
+            } catch (EOFException e) {
+                in.close();
+                throw new IllegalArgumentException("not a partial report: " + path, e);
+            } catch (RuntimeException e) {
+                in.close();
+                throw e;
+            }
+            this.groupsLeft = in.readInt();
+            in.readLong();
+        }
+
+        /**
+         * @return false once the file is exhausted
+         */
+        private boolean advance() throws IOException {
+            while (documentsLeft == 0) {
+                if (groupsLeft == 0) {
+                    document = null;
+                    return false;
+                }
+                groupsLeft--;
+                createdBy = DocumentRecordCodec.readString(in);
+                foldedKey = createdBy.toLowerCase();
+                documentsLeft = in.readInt();
+            }
+            documentsLeft--;
+            int nullMask = in.readUnsignedByte();
+            Document next = new Document();
+            next.documentFormatter = documentFormatter;
+            next.createdBy = createdBy;
+            next.name = DocumentRecordCodec.readString(in);
+            next.description = DocumentRecordCodec.readString(in);
+            next.lastModifiedBy = DocumentRecordCodec.readString(in);
+            next.sizeInBytes = (nullMask & NULL_SIZE) == 0 ? in.readLong() : null;
+            next.createdTime = (nullMask & NULL_CREATED_TIME) == 0 ? in.readLong() : null;
+            next.modifiedTime = (nullMask & NULL_MODIFIED_TIME) == 0 ? in.readLong() : null;
+            document = next;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * shard <input.csv> <partial>: loads one delimited shard (see DocumentBulkLoader) and writes its partial file
+     * merge <report> <partial>...: merges the partial files into a UTF-8 report
+     */
+    public static void main(final String[] args) throws IOException {
+        // Validate preconditions
+        Validate.isTrue(args.length >= 2 && ("shard".equals(args[0]) && args.length == 3 || "merge".equals(args[0])),
+                "usage: shard <input.csv> <partial> | merge <report> <partial>...");
+
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        if ("shard".equals(args[0])) {
+            DocumentBulkLoader.Result<List<Document>> result = new DocumentBulkLoader(documentFormatter).loadDocuments(Paths.get(args[1]));
+            if (result.getBadRowCount() > 0) {
+                log.warn("main(): {} bad rows skipped in {}, e.g. {}", result.getBadRowCount(), args[1], result.getBadRows().get(0));
+            }
+            writePartial(result.getData(), Paths.get(args[2]));
+            return;
+        }
+        List<Path> partials = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            partials.add(Paths.get(args[i]));
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(args[1])), StandardCharsets.UTF_8), IO_BUFFER_SIZE)) {
+            mergePartials(partials, documentFormatter, writer);
+        }
+    }
+}
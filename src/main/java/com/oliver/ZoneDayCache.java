@@ -0,0 +1,174 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Author: Oliver
+ * <p>
+ * bounded, lock-free cache from an epoch milli to its local day in one zone, with the day pre-rendered as yyyy-MM-dd.
+ * <p>
+ * every entry covers [fromMilli, untilMilli): the part of one local day during which the zone offset doesn't change,
+ * so DST transitions and historical offset changes only ever split a day into more entries, never give a wrong date.
+ * Entries are immutable and replace each other in a direct mapped table indexed by the epoch day.
+ * <p>
+ * the other direction, the instant a local day starts, is memoized the same way for parsing.
+ * <p>
+ * hits and misses go to the process wide DocumentMetrics counters only, so they are counted while metrics are enabled.
+ */
+@Slf4j
+class ZoneDayCache {
+    // constants
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // far beyond any real timestamp, and far enough from overflow for the day arithmetic
+    private static final long MAX_ABS_EPOCH_MILLI = 1L << 60;
+    // settings
+    private final ZoneId zoneId;
+    private final ZoneRules rules;
+    private final int mask;
+    // the offset at creation time, only used to guess which slot to look at first
+    private final long guessOffsetMillis;
+    private final AtomicReferenceArray<Day> days;
+    private final AtomicReferenceArray<Day> startsOfDay;
+
+    ZoneDayCache(final ZoneId zoneId) {
+        this(zoneId, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param zoneId   the zone the days are local to
+     * @param capacity the number of slots, a power of 2
+     */
+    ZoneDayCache(final ZoneId zoneId, final int capacity) {
+        // Validate preconditions
+        Validate.notNull(zoneId);
+        Validate.isTrue(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of 2: %d", capacity);
+
+        this.zoneId = zoneId;
+        this.rules = zoneId.getRules();
+        this.mask = capacity - 1;
+        this.guessOffsetMillis = rules.getOffset(Instant.now()).getTotalSeconds() * 1000L;
+        this.days = new AtomicReferenceArray<>(capacity);
+        this.startsOfDay = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @param epochMilli any instant
+     * @return the cached local day containing epochMilli, null when epochMilli is out of the supported range
+     */
+    Day day(final long epochMilli) {
+        if (epochMilli > MAX_ABS_EPOCH_MILLI || epochMilli < -MAX_ABS_EPOCH_MILLI) {
+            return null;
+        }
+        long guess = Math.floorDiv(epochMilli + guessOffsetMillis, MILLIS_PER_DAY);
+        // the real local day is at most one away from the guess unless the offset moved by more than a day
+        Day day = days.get((int) guess & mask);
+        if (day == null || !day.contains(epochMilli)) {
+            day = days.get((int) (guess - 1) & mask);
+            if (day == null || !day.contains(epochMilli)) {
+                day = days.get((int) (guess + 1) & mask);
+                if (day == null || !day.contains(epochMilli)) {
+                    DocumentMetrics.DAY_CACHE_MISSES.increment();
+                    day = load(epochMilli);
+                    days.set((int) day.epochDay & mask, day);
+                    return day;
+                }
+            }
+        }
+        DocumentMetrics.DAY_CACHE_HITS.increment();
+        return day;
+    }
+
+    private Day load(final long epochMilli) {
+        Instant instant = Instant.ofEpochMilli(epochMilli);
+        ZoneOffset offset = rules.getOffset(instant);
+        long offsetMillis = offset.getTotalSeconds() * 1000L;
+        long epochDay = Math.floorDiv(epochMilli + offsetMillis, MILLIS_PER_DAY);
+
+        // the local day under this offset, clipped to the span in which the offset holds
+        long fromMilli = epochDay * MILLIS_PER_DAY - offsetMillis;
+        long untilMilli = fromMilli + MILLIS_PER_DAY;
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+        if (previous != null) {
+            fromMilli = Math.max(fromMilli, previous.getInstant().toEpochMilli());
+        }
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        if (next != null) {
+            untilMilli = Math.min(untilMilli, next.getInstant().toEpochMilli());
+        }
+
+        StringBuilder text = new StringBuilder(10);
+        boolean isRendered = DocumentFormatter.appendEpochDay(epochDay, text);
+        log.debug("load(): {} is {} in [{}, {})", epochMilli, text, fromMilli, untilMilli);
+        return new Day(epochDay, fromMilli, untilMilli, isRendered ? text.toString() : null);
+    }
+
+    /**
+     * the instant of local midnight of epochDay, resolved the way LocalDateTime.atZone() does:
+     * a midnight inside a gap moves later by the length of the gap, one inside an overlap takes the earlier offset
+     *
+     * @param epochDay days since 1970-01-01
+     * @return epoch milli
+     */
+    long startOfDay(final long epochDay) {
+        if (rules.isFixedOffset()) {
+            return epochDay * MILLIS_PER_DAY - rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L;
+        }
+
+        int slot = (int) epochDay & mask;
+        Day start = startsOfDay.get(slot);
+        if (start == null || start.epochDay != epochDay) {
+            long fromMilli = LocalDateTime.of(LocalDate.ofEpochDay(epochDay), LocalTime.MIN).atZone(zoneId).toInstant().toEpochMilli();
+            start = new Day(epochDay, fromMilli, fromMilli, null);
+            startsOfDay.set(slot, start);
+        }
+        return start.fromMilli;
+    }
+
+    /**
+     * @return the hits of every day cache while metrics were enabled, since the last DocumentMetrics.reset()
+     */
+    long getHits() {
+        return DocumentMetrics.DAY_CACHE_HITS.sum();
+    }
+
+    /**
+     * @return the misses of every day cache while metrics were enabled, since the last DocumentMetrics.reset()
+     */
+    long getMisses() {
+        return DocumentMetrics.DAY_CACHE_MISSES.sum();
+    }
+
+    /**
+     * one local day, or the part of it with a single offset
+     */
+    static final class Day {
+        final long epochDay;
+        final long fromMilli;
+        final long untilMilli;
+        // yyyy-MM-dd, null when the year is outside 1..9999
+        final String text;
+
+        Day(final long epochDay, final long fromMilli, final long untilMilli, final String text) {
+            this.epochDay = epochDay;
+            this.fromMilli = fromMilli;
+            this.untilMilli = untilMilli;
+            this.text = text;
+        }
+
+        boolean contains(final long epochMilli) {
+            return fromMilli <= epochMilli && epochMilli < untilMilli;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class AuthorDictionaryTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenInterningAuthors_TheRanksFollowTheCreatedByOrder() {
+        AuthorDictionary authors = new AuthorDictionary();
+        // corner cases
+        Validate.isTrue(authors.intern(null) == AuthorDictionary.NULL_ID);
+        Validate.isTrue(authors.getName(AuthorDictionary.NULL_ID) == null);
+        Validate.isTrue(authors.ranks().length == 0);
+
+        Random random = new Random(17);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            // "Ab", "aB", "AB" ... fold to the same key, so the raw name has to break the tie
+            char[] chars = Integer.toString(random.nextInt(5000), 36).toCharArray();
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = random.nextBoolean() ? Character.toUpperCase(chars[j]) : chars[j];
+            }
+            String name = new String(chars);
+            int id = authors.intern(name);
+            Validate.isTrue(authors.intern(name) == id);
+            Validate.isTrue(authors.getName(id).equals(name));
+            Validate.isTrue(authors.getFoldedKey(id).equals(name.toLowerCase()));
+            if (id == names.size()) {
+                names.add(name);
+            }
+        }
+        Validate.isTrue(authors.size() == names.size());
+
+        int[] ranks = authors.ranks();
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(Document.CREATED_BY_ORDER);
+        for (int id = 0; id < names.size(); id++) {
+            Validate.isTrue(sorted.get(ranks[id]).equals(names.get(id)));
+        }
+
+        // a new name invalidates the cached ranks
+        int id = authors.intern(" first of all");
+        Validate.isTrue(authors.ranks()[id] == 0);
+        Validate.isTrue(authors.getId(" first of all") == id);
+        Validate.isTrue(authors.getId("never interned") == AuthorDictionary.NULL_ID);
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,147 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class CompressedReportOutputTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenCompressingInSmallBlocks_TheFileGunzipsToTheReportAndEveryGroupCanBeRead() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 20_000, 23);
+        lst.addAll(sampleDocuments(documentFormatter));
+        // a multi byte author, so the group offsets have to be in bytes
+        lst.get(0).setCreatedBy("Zo\u00eb");
+        Map<String, List<Document>> groups = Document.groupDocuments(lst);
+        String expected = new Document().printDocumentsReportHelper(lst).toString();
+
+        Path path = Files.createTempFile("veev-report-", ".gz");
+        Path indexPath = Files.createTempFile("veev-report-", ".idx");
+        try {
+            // corner cases
+            CompressedReportOutput empty = new CompressedReportOutput(Files.newOutputStream(path));
+            empty.close();
+            Validate.isTrue(Files.size(path) == 0 && empty.getIndex().getBlocks().isEmpty());
+
+            CompressedReportOutput output = new CompressedReportOutput(Files.newOutputStream(path), 4096, 1, null, 3);
+            try {
+                new Document().writeDocumentsReport(lst, output);
+            } finally {
+                output.close();
+            }
+            output.getIndex().write(indexPath);
+
+            // one gzip stream of members
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(path))) {
+                Validate.isTrue(IOUtils.toString(inputStream, StandardCharsets.UTF_8).equals(expected));
+            }
+            Validate.isTrue(Files.size(path) < expected.length() / 3);
+
+            CompressedReportIndex index = CompressedReportIndex.read(indexPath);
+            Validate.isTrue(index.getBlocks().size() > 1);
+            Validate.isTrue(index.getGroups().keySet().equals(groups.keySet()));
+            try (FileChannel channel = FileChannel.open(path)) {
+                for (Map.Entry<String, List<Document>> group : groups.entrySet()) {
+                    StringBuilder groupReport = new StringBuilder();
+                    new DocumentReportWriter(groupReport).writeGroup(group.getKey(), group.getValue());
+                    Validate.isTrue(groupReport.toString().equals(index.readGroup(channel, group.getKey())), group.getKey());
+                }
+                Validate.isTrue(index.readGroup(channel, "nobody") == null);
+            }
+
+            // cached groups from an index are cut the same way
+            DocumentReportIndex reportIndex = new DocumentReportIndex();
+            reportIndex.addAll(lst);
+            output = new CompressedReportOutput(Files.newOutputStream(path), 4096, 6, null, 2);
+            try {
+                reportIndex.writeDocumentsReport(output);
+            } finally {
+                output.close();
+            }
+            Validate.isTrue(output.getIndex().getBlocks().size() > 1);
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(path))) {
+                Validate.isTrue(IOUtils.toString(inputStream, StandardCharsets.UTF_8).equals(expected));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(indexPath);
+        }
+    }
+
+    @Test
+    void test_WhenTheParallelReporterWritesOversizedGroups_EveryGroupCanStillBeRead() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        // few authors, each far larger than a block, and one key longer than 64 KB
+        List<Document> lst = randomDocuments(documentFormatter, 30_000, 29);
+        lst.get(0).setCreatedBy(StringUtils.repeat("k", 70_000));
+        Map<String, List<Document>> groups = Document.groupDocuments(new ArrayList<>(lst));
+        String expected = new Document().printDocumentsReportHelper(new ArrayList<>(lst)).toString();
+
+        Path path = Files.createTempFile("veev-report-", ".gz");
+        Path indexPath = Files.createTempFile("veev-report-", ".idx");
+        ForkJoinPool forkJoinPool = new ForkJoinPool(3);
+        try {
+            CompressedReportOutput output = new CompressedReportOutput(Files.newOutputStream(path), 4096, 1, null, 2);
+            try {
+                new ParallelDocumentReporter(forkJoinPool, 100, 4).writeDocumentsReport(lst, output);
+            } finally {
+                output.close();
+            }
+            output.getIndex().write(indexPath);
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(path))) {
+                Validate.isTrue(IOUtils.toString(inputStream, StandardCharsets.UTF_8).equals(expected));
+            }
+
+            CompressedReportIndex index = CompressedReportIndex.read(indexPath);
+            Validate.isTrue(index.getGroups().keySet().equals(groups.keySet()));
+            for (CompressedReportIndex.Block block : index.getBlocks()) {
+                Validate.isTrue(block.getUncompressedLength() <= 3 * 2 * 4096);
+            }
+            try (FileChannel channel = FileChannel.open(path)) {
+                for (Map.Entry<String, List<Document>> group : groups.entrySet()) {
+                    StringBuilder groupReport = new StringBuilder();
+                    new DocumentReportWriter(groupReport).writeGroup(group.getKey(), group.getValue());
+                    Validate.isTrue(groupReport.toString().equals(index.readGroup(channel, group.getKey())));
+                }
+            }
+        } finally {
+            forkJoinPool.shutdown();
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(indexPath);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        log.info("Test End!\n");
+    }
+}
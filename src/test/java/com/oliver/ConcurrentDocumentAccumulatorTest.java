@@ -0,0 +1,110 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class ConcurrentDocumentAccumulatorTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenOneProducerAdds_TheContentsMatchTheHelper() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        ConcurrentDocumentAccumulator accumulator = new ConcurrentDocumentAccumulator();
+        Validate.isTrue(accumulator.snapshot().printDocumentsReportHelper().toString().equals(""));
+
+        accumulator.addAll(sampleDocuments(documentFormatter));
+        Validate.isTrue(accumulator.snapshot().printDocumentsReportHelper().toString().equals(SAMPLE_REPORT));
+
+        List<Document> lst = randomDocuments(documentFormatter, 5000, 13);
+        accumulator = new ConcurrentDocumentAccumulator(3);
+        accumulator.addAll(lst);
+        Validate.isTrue(accumulator.size() == lst.size());
+        Validate.isTrue(accumulator.snapshot().printDocumentsReportHelper().toString().equals(new Document().printDocumentsReportHelper(lst).toString()));
+    }
+
+    @Test
+    void test_WhenManyProducersAdd_EverySnapshotIsAPrefixOfEachProducer() throws Exception {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        int producers = 8;
+        int perProducer = 5000;
+        List<List<Document>> inputs = new ArrayList<>();
+        Map<Document, Integer> producerOf = new IdentityHashMap<>();
+        for (int p = 0; p < producers; p++) {
+            List<Document> input = randomDocuments(documentFormatter, perProducer, 100 + p);
+            inputs.add(input);
+            for (Document document : input) {
+                producerOf.put(document, p);
+            }
+        }
+
+        ConcurrentDocumentAccumulator accumulator = new ConcurrentDocumentAccumulator(4);
+        ExecutorService executorService = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<Document> input : inputs) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                for (Document document : input) {
+                    accumulator.add(document);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+
+        boolean isDone = false;
+        while (!isDone) {
+            isDone = futures.stream().allMatch(Future::isDone);
+            DocumentReportSnapshot snapshot = accumulator.snapshot();
+            // every producer contributes exactly its first k documents, and every group is sorted
+            Set<Document> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            int[] counts = new int[producers];
+            for (List<Document> group : snapshot.getGroups().values()) {
+                for (int i = 0; i < group.size(); i++) {
+                    Validate.isTrue(i == 0 || group.get(i - 1).getCreatedTime() <= group.get(i).getCreatedTime());
+                    Validate.isTrue(seen.add(group.get(i)));
+                    counts[producerOf.get(group.get(i))]++;
+                }
+            }
+            for (int p = 0; p < producers; p++) {
+                for (Document document : inputs.get(p).subList(0, counts[p])) {
+                    Validate.isTrue(seen.contains(document));
+                }
+            }
+            Validate.isTrue(snapshot.getSize() == seen.size());
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        Validate.isTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        Validate.isTrue(accumulator.snapshot().getSize() == producers * perProducer);
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
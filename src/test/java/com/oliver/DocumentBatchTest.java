@@ -0,0 +1,73 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentBatchTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenConvertingBackAndForth_TheDocumentsAreEqual() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = sampleDocuments(documentFormatter);
+        lst.get(0).setLastModifiedBy("Zoo");
+        lst.get(1).setSizeInBytes(null);
+        lst.get(2).setModifiedTime(null);
+
+        DocumentBatch batch = DocumentBatch.fromDocuments(lst, documentFormatter);
+        Validate.isTrue(batch.size() == lst.size());
+        // "Zoo" is stored once for createdBy and lastModifiedBy
+        Validate.isTrue(batch.getAuthorCount() == 6);
+        Validate.isTrue(batch.getSizeInBytes(1) == DocumentBatch.NULL_VALUE);
+        Validate.isTrue(batch.toDocuments().equals(lst));
+
+        // rows past the size are spare capacity, not documents
+        DocumentBatch spare = new DocumentBatch(documentFormatter, 16);
+        spare.add(lst.get(0));
+        Validate.isTrue(spare.getDocument(0).equals(lst.get(0)));
+        boolean isThrown = false;
+        try {
+            spare.getDocument(1);
+        } catch (IllegalArgumentException e) {
+            isThrown = true;
+        }
+        Validate.isTrue(isThrown);
+    }
+
+    @Test
+    void test_WhenReportingFromTheColumns_TheContentsMatchTheSerialPath() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+
+        StringBuilder sample = new StringBuilder();
+        DocumentBatch.fromDocuments(sampleDocuments(documentFormatter), documentFormatter).writeDocumentsReport(sample);
+        Validate.isTrue(sample.toString().equals(SAMPLE_REPORT));
+
+        List<Document> lst = randomDocuments(documentFormatter, 5000, 3);
+        StringBuilder stringBuilder = new StringBuilder();
+        DocumentBatch.fromDocuments(lst, documentFormatter).writeDocumentsReport(stringBuilder);
+        Validate.isTrue(stringBuilder.toString().equals(new Document().printDocumentsReportHelper(lst).toString()));
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
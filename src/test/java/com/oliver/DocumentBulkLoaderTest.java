@@ -0,0 +1,161 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.oliver.DocumentTest.*;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentBulkLoaderTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenLoadingQuotedCsvWithBadRows_TheGoodRowsAreLoadedAndTheBadOnesReported() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        Path path = Files.createTempFile("veev-test-", ".csv");
+        try {
+            Files.write(path, ("createdBy,name,description,size,createdTime,modifiedTime\r\n" +
+                    "Janet Smith,Janet Xray,\"" + TOO_LONG_EXPECT_TRUNCATION + "\",48 mb,2202-01-01,2202-01-01\r\n" +
+                    "Andy Andrews,\"Andy, \"\"the\"\" Zed\",\"two\nlines\",924 k,1300-01-01,\n" +
+                    "\n" +
+                    "Boy,Boy Sauce,too few fields\n" +
+                    "Boy,Boy Sauce,bad size,87 zb,1300-01-01,1300-01-01\n" +
+                    "Boy,\"Boy\" Sauce,junk after the quote,87 gb,1300-01-01,1300-01-01\n" +
+                    "Zoo,Zoo Sauce,,,not a date,3003-01-01\n" +
+                    "Zoo,\"Zoo Sauce,unterminated,87 gb,3000-01-01,3003-01-01\n").getBytes(StandardCharsets.UTF_8));
+
+            DocumentBulkLoader.Result<List<Document>> result = new DocumentBulkLoader(documentFormatter, ',', true, ForkJoinPool.commonPool(), 1 << 20).loadDocuments(path);
+            List<Document> lst = result.getData();
+            Validate.isTrue(result.getRowCount() == 3 && lst.size() == 3);
+            Validate.isTrue(lst.get(0).equals(new Document(documentFormatter, "Janet Smith", "Janet Xray", TOO_LONG_EXPECT_TRUNCATION, "48 mb", TIME_2202, TIME_2202)));
+            Validate.isTrue(lst.get(1).equals(new Document(documentFormatter, "Andy Andrews", "Andy, \"the\" Zed", "two\nlines", "924 k", TIME_1300, "")));
+            Validate.isTrue(lst.get(2).equals(new Document(documentFormatter, "Zoo", "Zoo Sauce", "", "", "not a date", TIME_3003)));
+
+            // rows are records, the quoted newline doesn't start a new one
+            Validate.isTrue(result.getBadRowCount() == 4);
+            Validate.isTrue(result.getBadRows().get(0).toString().equals("row 5: expected 6 fields but found 3"));
+            Validate.isTrue(result.getBadRows().get(1).toString().equals("row 6: invalid size: 87 zb"));
+            Validate.isTrue(result.getBadRows().get(2).toString().equals("row 7: unexpected character after a closing quote"));
+            Validate.isTrue(result.getBadRows().get(3).toString().equals("row 9: unterminated quoted field"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void test_WhenLoadingInManyParallelChunks_TheRowsAndTheReportMatchTheInput() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> expected = randomDocuments(documentFormatter, 3000, 17);
+        List<String> lines = new ArrayList<>();
+        for (Document document : expected) {
+            lines.add(document.getCreatedBy() + "\t" + document.getName() + "\t\"" + document.getDescription() + "\"\t"
+                    + DocumentFormatter.formatSize(document.getSizeInBytes()) + "\t" + documentFormatter.formatTime(document.getCreatedTime())
+                    + "\t" + documentFormatter.formatTime(document.getModifiedTime()));
+        }
+        Path path = Files.createTempFile("veev-test-", ".tsv");
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            Files.write(path, lines, StandardCharsets.UTF_8);
+            // about 1 kb per chunk, so dozens of chunks
+            DocumentBulkLoader documentBulkLoader = new DocumentBulkLoader(documentFormatter, '\t', false, forkJoinPool, 1024);
+
+            DocumentBulkLoader.Result<List<Document>> documents = documentBulkLoader.loadDocuments(path);
+            Validate.isTrue(documents.getBadRowCount() == 0);
+            Validate.isTrue(documents.getData().equals(expected));
+
+            DocumentBulkLoader.Result<DocumentBatch> batch = documentBulkLoader.loadBatch(path);
+            Validate.isTrue(batch.getRowCount() == expected.size());
+            StringBuilder stringBuilder = new StringBuilder();
+            batch.getData().writeDocumentsReport(stringBuilder);
+            Validate.isTrue(stringBuilder.toString().equals(new Document().printDocumentsReportHelper(expected).toString()));
+        } finally {
+            forkJoinPool.shutdown();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void test_WhenQuotedNewlinesCrossChunks_TheParallelCutFindsTheRowEnds() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> expected = randomDocuments(documentFormatter, 2000, 19);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < expected.size(); i++) {
+            Document document = expected.get(i);
+            // multi line descriptions with escaped quotes, and a few longer than many chunks
+            String description = i % 97 == 0 ? StringUtils.repeat("\"a\"\n", 500) : "line one\n\"quoted\", line " + i;
+            document.setDescription(description);
+            csv.append(document.getCreatedBy()).append(",\"").append(document.getName()).append("\",\"")
+                    .append(description.replace("\"", "\"\"")).append("\",").append(DocumentFormatter.formatSize(document.getSizeInBytes()))
+                    .append(',').append(documentFormatter.formatTime(document.getCreatedTime()))
+                    .append(',').append(documentFormatter.formatTime(document.getModifiedTime())).append('\n');
+        }
+        Path path = Files.createTempFile("veev-test-", ".csv");
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            Files.write(path, csv.toString().getBytes(StandardCharsets.UTF_8));
+            for (long chunkSize : new long[]{512, 4096, 1 << 20}) {
+                DocumentBulkLoader.Result<List<Document>> result = new DocumentBulkLoader(documentFormatter, ',', false, forkJoinPool, chunkSize).loadDocuments(path);
+                Validate.isTrue(result.getBadRowCount() == 0, "chunk size %d: %s", chunkSize, result.getBadRows());
+                Validate.isTrue(result.getData().equals(expected), "chunk size %d", chunkSize);
+            }
+        } finally {
+            forkJoinPool.shutdown();
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void test_WhenAPlainFieldHoldsAStrayQuote_EveryChunkSizeLoadsTheSameRows() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        StringBuilder csv = new StringBuilder("Andy,12\" ruler,plain,1 k,2013-05-12,2013-05-12\n");
+        for (int i = 0; i < 200; i++) {
+            csv.append("Bob,doc ").append(i).append(",\"line one\nline \"\"two\"\"\",2 k,2013-05-12,2013-05-12\n");
+            if (i % 50 == 0) {
+                // a bad row with a quote after a closed quoted field, skipped up to its row end
+                csv.append("Carol,\"bad\"x\",\"y\n\",3 k,2013-05-12,2013-05-12\n");
+            }
+        }
+        Path path = Files.createTempFile("veev-test-", ".csv");
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            Files.write(path, csv.toString().getBytes(StandardCharsets.UTF_8));
+            DocumentBulkLoader.Result<List<Document>> expected = new DocumentBulkLoader(documentFormatter, ',', false, forkJoinPool, 1 << 20).loadDocuments(path);
+            Validate.isTrue(expected.getRowCount() == 201 && expected.getBadRowCount() == 4, "%s", expected.getBadRows());
+            Validate.isTrue(expected.getData().get(0).getName().equals("12\" ruler"));
+            Validate.isTrue(expected.getData().get(1).getDescription().equals("line one\nline \"two\""));
+            for (long chunkSize : new long[]{97, 512, 4096}) {
+                DocumentBulkLoader.Result<List<Document>> result = new DocumentBulkLoader(documentFormatter, ',', false, forkJoinPool, chunkSize).loadDocuments(path);
+                Validate.isTrue(result.getRowCount() == expected.getRowCount() && result.getBadRowCount() == expected.getBadRowCount(), "chunk size %d: %s", chunkSize, result.getBadRows());
+                Validate.isTrue(result.getData().equals(expected.getData()), "chunk size %d", chunkSize);
+            }
+        } finally {
+            forkJoinPool.shutdown();
+            Files.delete(path);
+        }
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,95 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentDeduplicatorTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenRowsAreResent_TheFirstOfEveryKeyIsKeptAndTheRestCounted() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> unique = randomDocuments(documentFormatter, 20_000, 59);
+        unique.addAll(sampleDocuments(documentFormatter));
+        // retries resend copies, with another formatter and a later modifiedTime, which the default key ignores
+        List<Document> input = new ArrayList<>(unique);
+        Random random = new Random(61);
+        for (int i = 0; i < 5_000; i++) {
+            Document original = unique.get(random.nextInt(unique.size()));
+            Document copy = new Document(original.createdBy, original.name, original.description, original.sizeInBytes,
+                    original.createdTime, original.modifiedTime == null ? null : original.modifiedTime + 1);
+            copy.documentFormatter = new DocumentFormatter();
+            input.add(copy);
+        }
+        Collections.shuffle(input.subList(unique.size(), input.size()), random);
+
+        // corner cases
+        DocumentDeduplicator deduplicator = new DocumentDeduplicator();
+        Validate.isTrue(deduplicator.deduplicate(new ArrayList<>()).isEmpty() && deduplicator.getDroppedCount() == 0);
+
+        List<Document> kept = deduplicator.deduplicate(input);
+        Validate.isTrue(kept.equals(unique));
+        Validate.isTrue(deduplicator.getKeptCount() == unique.size() && deduplicator.getDroppedCount() == 5_000);
+        Validate.isTrue(new Document().printDocumentsReportHelper(kept).toString().equals(new Document().printDocumentsReportHelper(unique).toString()));
+
+        // modifiedTime in the key: every copy differs from its original
+        Set<DocumentDeduplicator.KeyField> key = EnumSet.copyOf(DocumentDeduplicator.DEFAULT_KEY);
+        key.add(DocumentDeduplicator.KeyField.MODIFIED_TIME);
+        DocumentDeduplicator strict = new DocumentDeduplicator(key);
+        Iterator<Document> iterator = strict.deduplicate(input.iterator());
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        Validate.isTrue(count + strict.getDroppedCount() == input.size() && count > unique.size());
+
+        // a null and an empty name are different keys, as are fields that only concatenate alike
+        DocumentDeduplicator names = new DocumentDeduplicator(EnumSet.of(DocumentDeduplicator.KeyField.CREATED_BY, DocumentDeduplicator.KeyField.NAME));
+        Validate.isTrue(names.add(new Document("ab", "c", null, null, null, null)));
+        Validate.isTrue(names.add(new Document("a", "bc", null, null, null, null)));
+        Validate.isTrue(names.add(new Document("a", null, null, null, null, null)));
+        Validate.isTrue(names.add(new Document("a", "", null, null, null, null)));
+        Validate.isTrue(!names.add(new Document("a", "", "other", 1L, 2L, 3L)));
+    }
+
+    @Test
+    void test_WhenBounded_NoDuplicateIsKeptAndFewUniqueRowsAreDropped() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> unique = randomDocuments(documentFormatter, 50_000, 67);
+        DocumentDeduplicator deduplicator = DocumentDeduplicator.bounded(DocumentDeduplicator.DEFAULT_KEY, unique.size(), 0.01);
+        List<Document> kept = deduplicator.deduplicate(unique);
+        // a false positive drops a unique row
+        Validate.isTrue(kept.size() > unique.size() * 0.98, "kept " + kept.size());
+        Validate.isTrue(deduplicator.deduplicate(unique).isEmpty());
+        Validate.isTrue(deduplicator.getKeptCount() == kept.size() && deduplicator.getDroppedCount() == 2L * unique.size() - kept.size());
+
+        DocumentDeduplicator.LongHashSet set = new DocumentDeduplicator.LongHashSet();
+        Validate.isTrue(set.add(0) && !set.add(0) && set.add(1) && set.contains(0) && set.size() == 2);
+        for (long value = 2; value < 100_000; value++) {
+            Validate.isTrue(set.add(value * 0x9e3779b97f4a7c15L));
+        }
+        Validate.isTrue(set.size() == 100_000 && set.contains(99_999 * 0x9e3779b97f4a7c15L) && !set.contains(-1));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        log.info("Test End!\n");
+    }
+}
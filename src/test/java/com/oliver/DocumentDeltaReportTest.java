@@ -0,0 +1,101 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentDeltaReportTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenDocumentsAreAddedRemovedAndModified_TheDeltaListsThemPerAuthor() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> before = sampleDocuments(documentFormatter);
+        // corner cases
+        Validate.isTrue(DocumentDeltaReport.printDeltaHelper(before, before).toString().equals(""));
+        Validate.isTrue(DocumentDeltaReport.printDeltaHelper(new ArrayList<>(), before).toString()
+                .equals(new Document().printDocumentsReportHelper(before).toString().replace("\nDocument{", "\n+ Document{")));
+
+        List<Document> after = sampleDocuments(documentFormatter);
+        // "Andy Zed" is gone, "Boy Sauce" grew, and Boy got a second document
+        after.remove(7);
+        after.get(5).setSizeInBytes(90L << 30);
+        after.add(new Document(documentFormatter, "Boy", "Boy Apple", "NEW", "342 bytes", "1300-01-01", "1300-01-01"));
+        DocumentDeltaReport delta;
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            delta = DocumentDeltaReport.writeDelta(before, after, stringBuilder);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        Validate.isTrue(stringBuilder.toString().equals("Andy Andrews\n" +
+                "- Document{'Andy Zed','Last_WORD TOO_Long_BUT_Don't_Chop_keep_it_whole_right?...',924 k,1300-01-01,1300-01-01}\n" +
+                "Boy\n" +
+                "+ Document{'Boy Apple','NEW',342 bytes,1300-01-01,1300-01-01}\n" +
+                "~ Document{'Boy Sauce','SHORT_NO_TRUNCATION',87 gb,1300-01-01,1300-01-01}\n" +
+                "> Document{'Boy Sauce','SHORT_NO_TRUNCATION',90 gb,1300-01-01,1300-01-01}\n"), stringBuilder.toString());
+        Validate.isTrue(delta.getAddedCount() == 1 && delta.getRemovedCount() == 1 && delta.getModifiedCount() == 1);
+        Validate.isTrue(delta.getUnchangedCount() == 6);
+    }
+
+    @Test
+    void test_WhenComparingStoredSnapshots_TheDeltaMatchesTheCollectionDelta() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> before = randomDocuments(documentFormatter, 20_000, 29);
+        // the same documents in another order, with a few changes
+        List<Document> after = new ArrayList<>(randomDocuments(documentFormatter, 20_000, 29));
+        Collections.shuffle(after, new Random(29));
+        Random random = new Random(31);
+        for (int i = 0; i < 100; i++) {
+            after.remove(random.nextInt(after.size()));
+            after.get(random.nextInt(after.size())).setDescription("changed " + i);
+        }
+        after.addAll(randomDocuments(documentFormatter, 100, 37));
+
+        String expected = DocumentDeltaReport.printDeltaHelper(before, after).toString();
+        Validate.isTrue(!expected.isEmpty());
+        Path beforePath = Files.createTempFile("veev-before-", ".bin");
+        Path afterPath = Files.createTempFile("veev-after-", ".bin");
+        try {
+            DocumentStore.write(before, documentFormatter, beforePath);
+            DocumentStore.write(after, documentFormatter, afterPath);
+            try (DocumentStore beforeStore = DocumentStore.open(beforePath, documentFormatter);
+                 DocumentStore afterStore = DocumentStore.open(afterPath, documentFormatter)) {
+                StringBuilder stringBuilder = new StringBuilder();
+                DocumentDeltaReport delta = DocumentDeltaReport.writeDelta(beforeStore, afterStore, stringBuilder);
+                Validate.isTrue(stringBuilder.toString().equals(expected));
+                Validate.isTrue(delta.getUnchangedCount() + delta.getModifiedCount() + delta.getRemovedCount() == before.size());
+                Validate.isTrue(delta.getUnchangedCount() + delta.getModifiedCount() + delta.getAddedCount() == after.size());
+            }
+        } finally {
+            Files.deleteIfExists(beforePath);
+            Files.deleteIfExists(afterPath);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,188 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+
+import static com.oliver.DocumentTest.*;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentFormatterTest {
+    // constants
+    private static final String[] ZONE_IDS = {"America/Toronto", "Asia/Tokyo", "Australia/Lord_Howe", "Europe/London", "Pacific/Apia", "Etc/GMT-14", "UTC"};
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenFormatSizeIntoBuffer_TheUnitBoundariesAreAsBefore() {
+        // corner cases
+        Validate.isTrue(DocumentFormatter.formatSize(Long.MIN_VALUE, new StringBuilder()).toString().equals("0 bytes"));
+        Validate.isTrue(DocumentFormatter.formatSize(0L).equals("0 bytes"));
+        Validate.isTrue(DocumentFormatter.formatSize(1L).equals("0 bytes"));
+        Validate.isTrue(DocumentFormatter.formatSize(2L).equals("2 bytes"));
+        // a size has to exceed the unit strictly
+        Validate.isTrue(DocumentFormatter.formatSize(1024L).equals("1024 bytes"));
+        Validate.isTrue(DocumentFormatter.formatSize(1025L).equals("1 k"));
+        Validate.isTrue(DocumentFormatter.formatSize(1048576L).equals("1024 k"));
+        Validate.isTrue(DocumentFormatter.formatSize(1048577L).equals("1 mb"));
+        Validate.isTrue(DocumentFormatter.formatSize(1125899906842625L).equals("1 pb"));
+        Validate.isTrue(DocumentFormatter.formatSize(Long.MAX_VALUE).equals("8191 pb"));
+
+        // appends, never replaces
+        Validate.isTrue(DocumentFormatter.formatSize(87L << 30 | 5, new StringBuilder("size=")).toString().equals("size=87 gb"));
+    }
+
+    @Test
+    void test_WhenFormatDescriptionIntoBuffer_TheTruncationIsAsBefore() {
+        Validate.isTrue(DocumentFormatter.formatDescription(null, new StringBuilder()).toString().equals(""));
+        Validate.isTrue(DocumentFormatter.formatDescription("   ", new StringBuilder()).toString().equals(""));
+        Validate.isTrue(DocumentFormatter.formatDescription(new StringBuilder(TOO_LONG_EXPECT_TRUNCATION), new StringBuilder()).toString().equals(TOO_LONG_EXPECT_TRUNCATION_TRUNCATED));
+        Validate.isTrue(DocumentFormatter.formatDescription(TOO_LONG_BUT_DONT_CHOP_THE_WORD, new StringBuilder()).toString().equals(TOO_LONG_BUT_DONT_CHOP_THE_WORD_TRUNCATED));
+        Validate.isTrue(DocumentFormatter.formatDescription(TOO_LONG_FIRST_WORD_CHOP_IT, new StringBuilder()).toString().equals(TOO_LONG_FIRST_WORD_CHOP_IT_TRUNCATED));
+        Validate.isTrue(DocumentFormatter.formatDescription(SHORT_NO_TRUNCATION, new StringBuilder()).toString().equals(SHORT_NO_TRUNCATION));
+        // the last word runs to the end
+        Validate.isTrue(DocumentFormatter.formatDescription("a bcdefghijklmnopqrstuvwxyz0123", new StringBuilder()).toString().equals("a bcdefghijklmnopqrstuvwxyz0123..."));
+    }
+
+    @Test
+    void test_WhenFormatDateIntoBuffer_TheDatesMatchJavaTime() {
+        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.CANADA);
+        Random random = new Random(11);
+        for (String id : ZONE_IDS) {
+            ZoneId zoneId = ZoneId.of(id);
+            DocumentFormatter documentFormatter = new DocumentFormatter(zoneId);
+            StringBuilder stringBuilder = new StringBuilder();
+            for (int i = 0; i < 20000; i++) {
+                // from year 1 to 9999, and days around the epoch
+                long epochMilli = i % 2 == 0 ? -62135596800000L + (long) (random.nextDouble() * 315537897599999L) : (random.nextLong() % (1L << 40));
+                stringBuilder.setLength(0);
+                Validate.isTrue(documentFormatter.formatDate(epochMilli, stringBuilder).toString().equals(Instant.ofEpochMilli(epochMilli).atZone(zoneId).format(dateTimeFormatter)));
+            }
+            // years outside 1..9999 fall back to java.time
+            Validate.isTrue(documentFormatter.formatTime(Long.MAX_VALUE).equals(Instant.ofEpochMilli(Long.MAX_VALUE).atZone(zoneId).format(dateTimeFormatter)));
+        }
+
+        // a custom pattern is honoured
+        DocumentFormatter custom = new DocumentFormatter(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"), ZoneId.of("UTC"));
+        Validate.isTrue(custom.formatTime(0L).equals("01/01/1970 00:00"));
+    }
+
+    @Test
+    void test_WhenFormattingAcrossTransitions_TheDayCacheAgreesWithJavaTime() {
+        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.CANADA);
+        // Sao Paulo used to end DST at midnight, Apia skipped 2011-12-30 entirely, Lord Howe shifts by half an hour
+        for (String id : new String[]{"America/Sao_Paulo", "Pacific/Apia", "Australia/Lord_Howe", "America/Toronto"}) {
+            ZoneId zoneId = ZoneId.of(id);
+            DocumentFormatter documentFormatter = new DocumentFormatter(zoneId);
+            // the hit ratio is counted by the metrics
+            DocumentMetrics.reset();
+            DocumentMetrics.setEnabled(true);
+            try {
+                // every 7 minutes over 2011 and 2012, twice so the second round is served from the cache
+                for (int round = 0; round < 2; round++) {
+                    for (long epochMilli = 1293840000000L; epochMilli < 1356998400000L; epochMilli += 420000L) {
+                        Validate.isTrue(documentFormatter.formatTime(epochMilli).equals(Instant.ofEpochMilli(epochMilli).atZone(zoneId).format(dateTimeFormatter)));
+                    }
+                }
+            } finally {
+                DocumentMetrics.setEnabled(false);
+            }
+            log.info("{}: day cache hits = {}, misses = {}", id, documentFormatter.getDayCacheHits(), documentFormatter.getDayCacheMisses());
+            Validate.isTrue(documentFormatter.getDayCacheMisses() > 0);
+            Validate.isTrue(documentFormatter.getDayCacheHits() > 100 * documentFormatter.getDayCacheMisses());
+        }
+    }
+
+    @Test
+    void test_WhenParseTimeByHand_TheResultsMatchJavaTime() {
+        Random random = new Random(5);
+        for (String id : new String[]{"America/Toronto", "America/Sao_Paulo", "Pacific/Apia", "Australia/Lord_Howe", "Etc/GMT-14"}) {
+            ZoneId zoneId = ZoneId.of(id);
+            DocumentFormatter documentFormatter = new DocumentFormatter(zoneId);
+            for (int i = 0; i < 20000; i++) {
+                // mostly valid dates, some with a day or month out of range
+                String text = String.format("%04d-%02d-%02d", random.nextInt(10000), 1 + random.nextInt(13), 1 + random.nextInt(31));
+                Validate.isTrue(Objects.equals(documentFormatter.parseTime(text), parseTimeWithJavaTime(text, zoneId)), text);
+            }
+            for (String text : new String[]{"2012-02-29", "2013-02-29", "2000-02-29", "1900-02-29", "0000-01-01", "2011-12-30", "+10000-01-01",
+                    "2013-5-09", "2013/05/09", "20130509", "2013-05-0a", " 2013-05-09", "2013-05-09 ", "N/A"}) {
+                Validate.isTrue(Objects.equals(documentFormatter.parseTime(text), parseTimeWithJavaTime(text, zoneId)), text);
+            }
+        }
+    }
+
+    /**
+     * the original parseTime()
+     */
+    private static Long parseTimeWithJavaTime(final String text, final ZoneId zoneId) {
+        try {
+            return LocalDateTime.of(LocalDate.parse(text), LocalTime.MIN).atZone(zoneId).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Test
+    void test_WhenParseSizeWithoutExceptions_TheBytesAreExact() {
+        // the classic forms
+        Validate.isTrue(DocumentFormatter.parseSize("423 bytes", 0, 9) == 423L);
+        Validate.isTrue(parse("924 k") == 924L * 1024);
+        Validate.isTrue(parse("233 pb") == 233L << 50);
+        // any case, decimals, spacing, a range of a bigger sequence
+        Validate.isTrue(parse("1.5 GB") == 3L << 29);
+        Validate.isTrue(parse(" 2.25Mb ") == 9L << 18);
+        Validate.isTrue(parse(".5 k") == 512L);
+        Validate.isTrue(parse("7. bytes") == 7L);
+        Validate.isTrue(parse("0.0009765625 k") == 1L);
+        Validate.isTrue(parse("0.3 bytes") == 0L);
+        Validate.isTrue(DocumentFormatter.parseSize(new StringBuilder("a,48 mb,b"), 2, 7) == 48L << 20);
+        // the largest sizes and overflow
+        Validate.isTrue(parse("8191 pb") == 8191L << 50);
+        Validate.isTrue(parse("8191.999999999999999999 pb") == (8191L << 50) + (1L << 50) - 1);
+        Validate.isTrue(parse("8192 pb") == DocumentFormatter.INVALID_SIZE);
+        Validate.isTrue(parse("9223372036854775807 bytes") == Long.MAX_VALUE);
+        Validate.isTrue(parse("9223372036854775808 bytes") == DocumentFormatter.INVALID_SIZE);
+        // not sizes
+        for (String text : new String[]{"", "  ", "mb", "12", "12 kb", "-1 k", "1,5 mb", "1.2.3 k", "12 mb x", ". k"}) {
+            Validate.isTrue(parse(text) == DocumentFormatter.INVALID_SIZE, text);
+        }
+
+        // the String flavour keeps its contract: null for blank, an exception for garbage
+        Validate.isTrue(DocumentFormatter.parseSize((String) null) == null);
+        Validate.isTrue(DocumentFormatter.parseSize("1.5 gb") == 3L << 29);
+        boolean isThrown = false;
+        try {
+            DocumentFormatter.parseSize("12 kb");
+        } catch (IllegalArgumentException e) {
+            isThrown = true;
+        }
+        Validate.isTrue(isThrown);
+    }
+
+    private static long parse(final CharSequence size) {
+        return DocumentFormatter.parseSize(size);
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
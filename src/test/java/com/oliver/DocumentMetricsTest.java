@@ -0,0 +1,115 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentMetricsTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenEnabled_TheReportIsCountedAndTimed() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = sampleDocuments(documentFormatter);
+        DocumentMetrics.reset();
+        try {
+            // nothing is recorded while disabled
+            new Document().printDocumentsReportHelper(lst);
+            Validate.isTrue(documentFormatter.parseTime("2019-02-30") == null);
+            Validate.isTrue(DocumentMetrics.snapshot().get("report.count") == 0);
+            Validate.isTrue(DocumentMetrics.snapshot().get("parse.time.failures") == 0);
+            Validate.isTrue(documentFormatter.getDayCacheHits() == 0 && documentFormatter.getDayCacheMisses() == 0);
+
+            DocumentMetrics.setEnabled(true);
+            ConcurrentDocumentAccumulator accumulator = new ConcurrentDocumentAccumulator();
+            DocumentMetrics.registerGauge("accumulator.size", accumulator::size);
+            Validate.isTrue(new Document().printDocumentsReportHelper(lst).toString().equals(SAMPLE_REPORT));
+            Validate.isTrue(documentFormatter.parseTime("2019-02-30") == null);
+            Validate.isTrue(documentFormatter.parseTime("2019-2-3") == null);
+            Validate.isTrue(DocumentFormatter.parseSize("12 parsecs", 0, 10) == DocumentFormatter.INVALID_SIZE);
+            accumulator.addAll(lst);
+
+            Map<String, Long> snapshot = DocumentMetrics.snapshot();
+            log.info("snapshot = {}", snapshot);
+            Validate.isTrue(snapshot.get("report.count") == 1);
+            Validate.isTrue(snapshot.get("report.chars.emitted") == SAMPLE_REPORT.length());
+            Validate.isTrue(snapshot.get("report.grouping.nanos.count") == 1);
+            Validate.isTrue(snapshot.get("report.sorting.nanos.count") == 1);
+            Validate.isTrue(snapshot.get("report.formatting.nanos.count") == 1);
+            Validate.isTrue(snapshot.get("report.formatting.nanos.p99") <= snapshot.get("report.formatting.nanos.max"));
+            Validate.isTrue(snapshot.get("parse.time.failures") == 2);
+            Validate.isTrue(snapshot.get("parse.size.failures") == 1);
+            Validate.isTrue(snapshot.get("rows.ingested") == lst.size());
+            Validate.isTrue(snapshot.get("formatter.dayCache.hits") == documentFormatter.getDayCacheHits());
+            Validate.isTrue(snapshot.get("formatter.dayCache.misses") == documentFormatter.getDayCacheMisses());
+            Validate.isTrue(snapshot.get("formatter.dayCache.hits") > 0);
+            Validate.isTrue(snapshot.get("accumulator.size") == lst.size());
+
+            StringBuilder export = new StringBuilder();
+            DocumentMetrics.export(export);
+            Validate.isTrue(export.toString().contains("report.count 1\n"));
+
+            // the parallel path counts its chars too
+            new ParallelDocumentReporter().writeDocumentsReport(lst, new StringBuilder());
+            Validate.isTrue(DocumentMetrics.snapshot().get("report.chars.emitted") == 2L * SAMPLE_REPORT.length());
+        } finally {
+            DocumentMetrics.setEnabled(false);
+            DocumentMetrics.unregisterGauge("accumulator.size");
+            DocumentMetrics.reset();
+        }
+    }
+
+    @Test
+    void test_WhenRecordingValues_ThePercentilesAreWithinTheBucketError() {
+        // buckets are contiguous and every value lands in a bucket that contains it
+        for (int bucket = 1; bucket < 488; bucket++) {
+            Validate.isTrue(DocumentMetrics.Histogram.highestValueOf(bucket) > DocumentMetrics.Histogram.highestValueOf(bucket - 1));
+            Validate.isTrue(DocumentMetrics.Histogram.bucketOf(DocumentMetrics.Histogram.highestValueOf(bucket)) == bucket);
+            Validate.isTrue(DocumentMetrics.Histogram.bucketOf(DocumentMetrics.Histogram.highestValueOf(bucket - 1) + 1) == bucket);
+        }
+        Validate.isTrue(DocumentMetrics.Histogram.highestValueOf(487) == Long.MAX_VALUE);
+
+        DocumentMetrics.Histogram histogram = DocumentMetrics.FORMATTING;
+        DocumentMetrics.reset();
+        DocumentMetrics.setEnabled(true);
+        try {
+            Random random = new Random(23);
+            for (int i = 1; i <= 100_000; i++) {
+                histogram.record(i * 1000L + random.nextInt(1000));
+            }
+            Validate.isTrue(histogram.getCount() == 100_000);
+            for (int percentile : new int[]{50, 90, 99}) {
+                double expected = percentile * 1000 * 1000.0;
+                double actual = histogram.percentile(percentile);
+                Validate.isTrue(Math.abs(actual - expected) / expected < 0.125, "p%d = %f", percentile, actual);
+            }
+            Validate.isTrue(histogram.percentile(100) == histogram.getMax());
+        } finally {
+            DocumentMetrics.setEnabled(false);
+            DocumentMetrics.reset();
+        }
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,129 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentReportIndexTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenAddingUpdatingAndRemoving_TheContentsMatchARebuild() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        DocumentReportIndex index = new DocumentReportIndex();
+        Validate.isTrue(index.printDocumentsReportHelper().toString().equals(""));
+
+        index.addAll(sampleDocuments(documentFormatter));
+        Validate.isTrue(index.printDocumentsReportHelper().toString().equals(SAMPLE_REPORT));
+
+        // the same edits on the index and on a plain list that is rebuilt every time
+        index = new DocumentReportIndex();
+        List<Document> lst = randomDocuments(documentFormatter, 2000, 5);
+        index.addAll(lst);
+        List<Document> pool = randomDocuments(documentFormatter, 500, 6);
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            for (int edit = 0; edit < 20; edit++) {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        Document added = pool.get(random.nextInt(pool.size()));
+                        if (index.add(added)) {
+                            lst.add(added);
+                        }
+                        break;
+                    case 1:
+                        Document updated = lst.get(random.nextInt(lst.size()));
+                        updated.setCreatedBy(random.nextBoolean() ? updated.getCreatedBy().toUpperCase() : "Newcomer");
+                        updated.setCreatedTime(updated.getCreatedTime() + 86_400_000L * (random.nextInt(5) - 2));
+                        index.update(updated);
+                        break;
+                    default:
+                        Document removed = lst.remove(random.nextInt(lst.size()));
+                        Validate.isTrue(index.remove(removed));
+                        Validate.isTrue(!index.remove(removed));
+                }
+            }
+            Validate.isTrue(index.size() == lst.size());
+            Validate.isTrue(index.printDocumentsReportHelper().toString().equals(new Document().printDocumentsReportHelper(lst).toString()));
+        }
+    }
+
+    @Test
+    void test_WhenOneGroupChanges_OnlyThatGroupIsWritten() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = sampleDocuments(documentFormatter);
+        DocumentReportIndex index = new DocumentReportIndex();
+        index.addAll(lst);
+        StringBuilder everything = new StringBuilder();
+        Validate.isTrue(index.writeChangedGroups(everything).size() == index.getGroupCount());
+        Validate.isTrue(everything.toString().equals(SAMPLE_REPORT));
+        Validate.isTrue(index.getChangedKeys().isEmpty());
+
+        // move the only "Zoo" document to a new group and touch one of "Andy Andrews"
+        Document zoo = lst.get(2);
+        Validate.isTrue(zoo.getCreatedBy().equals("Zoo"));
+        zoo.setCreatedBy("Xavier");
+        index.update(zoo);
+        Document andy = lst.get(7);
+        andy.setName("Renamed");
+        index.update(andy);
+
+        StringBuilder changed = new StringBuilder();
+        Validate.isTrue(index.writeChangedGroups(changed).equals(Arrays.asList("Andy Andrews", "Xavier", "Zoo")));
+        Validate.isTrue(changed.toString().startsWith("Andy Andrews\nDocument{'Renamed'"));
+        Validate.isTrue(changed.toString().contains("Xavier\n"));
+        Validate.isTrue(!changed.toString().contains("Zoo\n"));
+        Validate.isTrue(index.printDocumentsReportHelper().toString().equals(new Document().printDocumentsReportHelper(new ArrayList<>(lst)).toString()));
+    }
+
+    @Test
+    void test_WhenTheRenderedGroupsOutgrowTheCache_TheReportIsTheSameAndTheCacheStaysBounded() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 3000, 31);
+        lst.addAll(sampleDocuments(documentFormatter));
+        String expected = new Document().printDocumentsReportHelper(new ArrayList<>(lst)).toString();
+        for (long maxCachedChars : new long[]{0, 1000, 100_000, DocumentReportIndex.DEFAULT_MAX_CACHED_CHARS}) {
+            DocumentReportIndex index = new DocumentReportIndex(maxCachedChars);
+            index.addAll(lst);
+            for (int round = 0; round < 3; round++) {
+                Validate.isTrue(index.printDocumentsReportHelper().toString().equals(expected));
+                Validate.isTrue(index.getCachedChars() <= maxCachedChars);
+            }
+            // a change drops the cached text of its group
+            Document document = lst.get(0);
+            long cachedChars = index.getCachedChars();
+            document.setName("Renamed");
+            index.update(document);
+            Validate.isTrue(index.getCachedChars() <= cachedChars);
+            Validate.isTrue(index.printDocumentsReportHelper().toString().equals(new Document().printDocumentsReportHelper(new ArrayList<>(lst)).toString()));
+            document.setName("doc 0");
+            index.update(document);
+        }
+        Validate.isTrue(new DocumentReportIndex(0).getCachedChars() == 0);
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
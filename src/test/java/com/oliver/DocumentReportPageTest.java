@@ -0,0 +1,87 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentReportPageTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenPagingWithoutLimits_TheContentsMatchTheHelper() {
+        List<Document> lst = sampleDocuments(new DocumentFormatter());
+        DocumentReportPage page = DocumentReportPage.query(lst, null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Validate.isTrue(page.printDocumentsReportHelper().toString().equals(SAMPLE_REPORT));
+        Validate.isTrue(page.getNextCursor() == null);
+
+        // the first two authors with one document each
+        page = DocumentReportPage.query(lst, null, 2, 1);
+        Validate.isTrue(page.printDocumentsReportHelper().toString().equals(SAMPLE_REPORT.substring(0, SAMPLE_REPORT.indexOf("Bobby Andrews"))
+                .replace("Document{'Andy Sauce','SHORT_NO_TRUNCATION',87 gb,1501-01-01,1501-01-01}\n", "")));
+        Validate.isTrue(page.getNextCursor().equals("aoy"));
+        Validate.isTrue(page.getGroupSizes().get("Andy Andrews") == 2);
+    }
+
+    @Test
+    void test_WhenWalkingAllPages_TheyConcatenateToTheCutReport() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 3000, 11);
+        DocumentReportIndex index = new DocumentReportIndex();
+        index.addAll(lst);
+        for (int authorLimit : new int[]{1, 2, 3, 100}) {
+            for (int documentLimit : new int[]{1, 5, 10_000}) {
+                // the full report cut to documentLimit documents per group
+                StringBuilder expected = new StringBuilder();
+                for (Map.Entry<String, List<Document>> entry : Document.groupDocuments(lst).entrySet()) {
+                    List<Document> group = entry.getValue();
+                    StringBuilder stringBuilder = new StringBuilder(entry.getKey()).append('\n');
+                    for (Document document : group.subList(0, Math.min(documentLimit, group.size()))) {
+                        document.appendBeautify(stringBuilder).append('\n');
+                    }
+                    expected.append(stringBuilder);
+                }
+
+                StringBuilder scanned = new StringBuilder();
+                StringBuilder indexed = new StringBuilder();
+                String cursor = null;
+                int pages = 0;
+                do {
+                    DocumentReportPage page = DocumentReportPage.query(lst, cursor, authorLimit, documentLimit);
+                    DocumentReportPage indexPage = index.page(cursor, authorLimit, documentLimit);
+                    Validate.isTrue(page.getGroups().size() <= authorLimit);
+                    Validate.isTrue(page.getGroupSizes().equals(indexPage.getGroupSizes()));
+                    scanned.append(page.printDocumentsReportHelper());
+                    indexed.append(indexPage.printDocumentsReportHelper());
+                    Validate.isTrue(String.valueOf(page.getNextCursor()).equals(String.valueOf(indexPage.getNextCursor())));
+                    cursor = page.getNextCursor();
+                    pages++;
+                } while (cursor != null);
+                Validate.isTrue(pages == (7 + authorLimit - 1) / authorLimit);
+                Validate.isTrue(scanned.toString().equals(expected.toString()));
+                Validate.isTrue(indexed.toString().equals(expected.toString()));
+            }
+        }
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,209 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentReportServiceTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenManyClientsRequest_EachGetsItsOwnReport() throws Exception {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        try (DocumentReportService service = new DocumentReportService(DocumentReportSnapshot.of(sampleDocuments(documentFormatter)))) {
+            StringBuilder all = new StringBuilder();
+            Validate.isTrue(service.submit(DocumentReportService.ReportRequest.all(), all).get() == 8);
+            Validate.isTrue(all.toString().equals(SAMPLE_REPORT));
+
+            // authors come back in report order, unknown ones are ignored
+            StringBuilder some = new StringBuilder();
+            service.submit(DocumentReportService.ReportRequest.forAuthors("Zoo", "Nobody", "Andy Andrews"), some).get();
+            Validate.isTrue(some.toString().equals(SAMPLE_REPORT.substring(0, SAMPLE_REPORT.indexOf("aoy\n")) + SAMPLE_REPORT.substring(SAMPLE_REPORT.indexOf("Zoo\n"))));
+
+            // groups the filter empties are left out
+            StringBuilder filtered = new StringBuilder();
+            service.submit(new DocumentReportService.ReportRequest(null, document -> document.getName().startsWith("Janet")), filtered).get();
+            Validate.isTrue(filtered.toString().equals(SAMPLE_REPORT.substring(SAMPLE_REPORT.indexOf("Janet Smith\n"), SAMPLE_REPORT.indexOf("Zoo\n"))));
+
+            // many concurrent clients on a bigger snapshot
+            List<Document> lst = randomDocuments(documentFormatter, 5000, 29);
+            service.publish(DocumentReportSnapshot.of(lst));
+            String expected = new Document().printDocumentsReportHelper(lst).toString();
+            List<Future<Long>> futures = new ArrayList<>();
+            List<StringBuilder> sinks = new ArrayList<>();
+            for (int client = 0; client < 64; client++) {
+                StringBuilder sink = new StringBuilder();
+                sinks.add(sink);
+                futures.add(service.submit(DocumentReportService.ReportRequest.all(), sink));
+            }
+            for (int client = 0; client < futures.size(); client++) {
+                Validate.isTrue(futures.get(client).get() == lst.size());
+                Validate.isTrue(sinks.get(client).toString().equals(expected));
+            }
+        }
+    }
+
+    @Test
+    void test_WhenTheServiceIsFull_RequestsAreRejectedAndCancellable() throws Exception {
+        DocumentReportSnapshot snapshot = DocumentReportSnapshot.of(sampleDocuments(new DocumentFormatter()));
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        CountDownLatch isWriting = new CountDownLatch(1);
+        CountDownLatch never = new CountDownLatch(1);
+        // a client that never reads
+        Appendable blockingSink = new Appendable() {
+            @Override
+            public Appendable append(final CharSequence csq) throws IOException {
+                isWriting.countDown();
+                try {
+                    never.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return this;
+            }
+
+            @Override
+            public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(final char c) throws IOException {
+                return append(String.valueOf(c));
+            }
+        };
+        try (DocumentReportService service = new DocumentReportService(snapshot, executorService, 1, 50)) {
+            Future<Long> stuck = service.submit(DocumentReportService.ReportRequest.all(), blockingSink);
+            Validate.isTrue(isWriting.await(10, TimeUnit.SECONDS));
+            Validate.isTrue(service.getAvailableSlots() == 0);
+            try {
+                service.submit(DocumentReportService.ReportRequest.all(), new StringBuilder());
+                Validate.isTrue(false);
+            } catch (RejectedExecutionException e) {
+                log.info("e = {}", e.getMessage());
+            }
+
+            // cancelling frees the slot
+            Validate.isTrue(stuck.cancel(true));
+            for (int i = 0; i < 1000 && service.getAvailableSlots() == 0; i++) {
+                Thread.sleep(10);
+            }
+            StringBuilder sink = new StringBuilder();
+            Validate.isTrue(service.submit(DocumentReportService.ReportRequest.all(), sink).get(10, TimeUnit.SECONDS) == 8);
+            Validate.isTrue(sink.toString().equals(SAMPLE_REPORT));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_WhenAQueuedRequestIsCancelled_ItsSlotIsFreed() throws Exception {
+        DocumentReportSnapshot snapshot = DocumentReportSnapshot.of(sampleDocuments(new DocumentFormatter()));
+        // one thread, more slots than threads: the second request waits in the queue of the executor
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        CountDownLatch isRunning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (DocumentReportService service = new DocumentReportService(snapshot, executorService, 2, 50)) {
+            executorService.execute(() -> {
+                isRunning.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Validate.isTrue(isRunning.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 10; i++) {
+                Future<Long> queued = service.submit(DocumentReportService.ReportRequest.all(), new StringBuilder());
+                Validate.isTrue(queued.cancel(true));
+            }
+            Validate.isTrue(service.getAvailableSlots() == 2);
+
+            release.countDown();
+            StringBuilder sink = new StringBuilder();
+            Validate.isTrue(service.submit(DocumentReportService.ReportRequest.all(), sink).get(10, TimeUnit.SECONDS) == 8);
+            Validate.isTrue(sink.toString().equals(SAMPLE_REPORT));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_WhenARunningRequestIsCancelled_ItKeepsItsSlotUntilItStops() throws Exception {
+        DocumentReportSnapshot snapshot = DocumentReportSnapshot.of(sampleDocuments(new DocumentFormatter()));
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        CountDownLatch isWriting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // a client that ignores the interrupt until it is released
+        Appendable slowSink = new Appendable() {
+            @Override
+            public Appendable append(final CharSequence csq) {
+                isWriting.countDown();
+                boolean isInterrupted = false;
+                while (true) {
+                    try {
+                        release.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        isInterrupted = true;
+                    }
+                }
+                if (isInterrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return this;
+            }
+
+            @Override
+            public Appendable append(final CharSequence csq, final int start, final int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(final char c) {
+                return append(String.valueOf(c));
+            }
+        };
+        try (DocumentReportService service = new DocumentReportService(snapshot, executorService, 1, 50)) {
+            Future<Long> running = service.submit(DocumentReportService.ReportRequest.all(), slowSink);
+            Validate.isTrue(isWriting.await(10, TimeUnit.SECONDS));
+            Validate.isTrue(running.cancel(true));
+            // still writing, so the slot is still taken
+            Thread.sleep(100);
+            Validate.isTrue(service.getAvailableSlots() == 0);
+
+            release.countDown();
+            for (int i = 0; i < 1000 && service.getAvailableSlots() == 0; i++) {
+                Thread.sleep(10);
+            }
+            Validate.isTrue(service.getAvailableSlots() == 1);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
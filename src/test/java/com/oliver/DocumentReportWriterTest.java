@@ -0,0 +1,67 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentReportWriterTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenStreamingToWriterInTinyChunks_TheContentsMatchTheHelper() throws IOException {
+        Document document = new Document();
+        List<Document> lst = sampleDocuments(new DocumentFormatter());
+
+        // corner cases
+        StringWriter empty = new StringWriter();
+        document.writeDocumentsReport(new LinkedList<>(), empty);
+        Validate.isTrue(empty.toString().equals(""));
+
+        // chunk sizes from one char up to more than the whole report
+        for (int chunkSize : new int[]{1, 7, 64, DocumentReportWriter.DEFAULT_CHUNK_SIZE}) {
+            StringWriter stringWriter = new StringWriter();
+            DocumentReportWriter reportWriter = new DocumentReportWriter(stringWriter, chunkSize);
+            reportWriter.writeGroup("Andy Andrews", lst.subList(7, 8));
+            reportWriter.flush();
+            Validate.isTrue(stringWriter.toString().equals(SAMPLE_REPORT.substring(0, SAMPLE_REPORT.indexOf("Document{'Andy Sauce'"))));
+        }
+
+        StringWriter stringWriter = new StringWriter();
+        document.writeDocumentsReport(lst, stringWriter);
+        Validate.isTrue(stringWriter.toString().equals(SAMPLE_REPORT));
+        Validate.isTrue(stringWriter.toString().equals(document.printDocumentsReportHelper(lst).toString()));
+    }
+
+    @Test
+    void test_WhenStreamingToOutputStream_TheBytesAreUtf8OfTheReport() throws IOException {
+        Document document = new Document();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        document.writeDocumentsReport(sampleDocuments(new DocumentFormatter()), outputStream);
+        Validate.isTrue(new String(outputStream.toByteArray(), StandardCharsets.UTF_8).equals(SAMPLE_REPORT));
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
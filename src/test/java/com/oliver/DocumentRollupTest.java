@@ -0,0 +1,85 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentRollupTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenRollingUpTheSample_TheSummaryLinesAreAsExpected() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = sampleDocuments(documentFormatter);
+        lst.get(5).setSizeInBytes(null);
+        lst.get(5).setCreatedTime(null);
+        lst.get(5).setModifiedTime(null);
+
+        // corner cases
+        Validate.isTrue(new DocumentRollup(documentFormatter).printSummaryHelper().toString().equals(""));
+
+        DocumentRollup rollup = DocumentRollup.of(lst, documentFormatter);
+        Validate.isTrue(rollup.getAuthorCount() == 6 && rollup.getCount("Andy Andrews") == 2 && rollup.getCount("nobody") == 0);
+        Validate.isTrue(rollup.getMaxSize("Boy") == DocumentBatch.NULL_VALUE);
+        String summary = rollup.printSummaryHelper().toString();
+        Validate.isTrue(summary.startsWith("Andy Andrews\n" +
+                "Summary{2 documents,87 gb total,43 gb average,87 gb max,created 1300-01-01..1501-01-01,modified 1300-01-01..1501-01-01}\n" +
+                "aoy\n"), summary);
+        Validate.isTrue(summary.contains("Boy\nSummary{1 documents,,,,created ,modified }\n"), summary);
+
+        // the full report is the plain report with a summary line under every header
+        StringBuilder stringBuilder = new StringBuilder();
+        DocumentRollup.writeDocumentsReport(lst, documentFormatter, stringBuilder);
+        Validate.isTrue(stringBuilder.toString().replaceAll("Summary\\{[^\n]*\n", "")
+                .equals(new Document().printDocumentsReportHelper(lst).toString()));
+        Validate.isTrue(stringBuilder.toString().replaceAll("Document\\{[^\n]*\n", "").equals(summary));
+    }
+
+    @Test
+    void test_WhenRollingUpPartitionsInParallel_TheMergedRollupMatchesABruteForcePass() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 20_000, 47);
+        DocumentRollup serial = DocumentRollup.of(lst, documentFormatter);
+        DocumentRollup parallel = DocumentRollup.of(DocumentBatch.fromDocuments(lst, documentFormatter), new ForkJoinPool(4), 7);
+        Validate.isTrue(parallel.printSummaryHelper().toString().equals(serial.printSummaryHelper().toString()));
+
+        Map<String, List<Document>> groups = Document.groupDocuments(lst);
+        Validate.isTrue(parallel.getAuthors().equals(new ArrayList<>(groups.keySet())));
+        for (Map.Entry<String, List<Document>> group : groups.entrySet()) {
+            String author = group.getKey();
+            long total = group.getValue().stream().mapToLong(Document::getSizeInBytes).sum();
+            Validate.isTrue(parallel.getCount(author) == group.getValue().size());
+            Validate.isTrue(parallel.getTotalSize(author) == total);
+            Validate.isTrue(parallel.getAverageSize(author) == total / group.getValue().size());
+            Validate.isTrue(parallel.getMaxSize(author) == group.getValue().stream().mapToLong(Document::getSizeInBytes).max().getAsLong());
+            // each group is sorted by createdTime
+            Validate.isTrue(parallel.getEarliestCreatedTime(author) == group.getValue().get(0).createdTime);
+            Validate.isTrue(parallel.getLatestCreatedTime(author) == group.getValue().get(group.getValue().size() - 1).createdTime);
+            Validate.isTrue(parallel.getLatestModifiedTime(author) == group.getValue().stream().mapToLong(Document::getModifiedTime).max().getAsLong());
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,97 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class DocumentStoreTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenWritingAndMapping_TheReportAndFieldsSurvive() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        Path path = Files.createTempFile("veev-store-", ".bin");
+        try {
+            // corner cases
+            DocumentStore.write(new ArrayList<>(), documentFormatter, path);
+            try (DocumentStore store = DocumentStore.open(path, documentFormatter)) {
+                Validate.isTrue(store.size() == 0);
+                StringBuilder empty = new StringBuilder();
+                store.writeDocumentsReport(empty);
+                Validate.isTrue(empty.toString().equals(""));
+            }
+
+            List<Document> lst = sampleDocuments(documentFormatter);
+            lst.get(0).setLastModifiedBy("Zo\u00eb");
+            lst.get(1).setSizeInBytes(null);
+            lst.get(2).setDescription(null);
+            lst.get(3).setModifiedTime(null);
+            String expected = new Document().printDocumentsReportHelper(lst).toString();
+            DocumentStore.write(lst, documentFormatter, path);
+            try (DocumentStore store = DocumentStore.open(path, documentFormatter)) {
+                StringBuilder stringBuilder = new StringBuilder();
+                store.writeDocumentsReport(stringBuilder);
+                Validate.isTrue(stringBuilder.toString().equals(expected));
+                // the rows come back in report order
+                List<Document> sorted = new ArrayList<>();
+                Document.groupDocuments(lst).values().forEach(sorted::addAll);
+                Validate.isTrue(store.toBatch().toDocuments().equals(sorted));
+                for (int row = 0; row < store.size(); row++) {
+                    Validate.isTrue(store.getDocument(row).equals(sorted.get(row)));
+                }
+            }
+
+            lst = randomDocuments(documentFormatter, 20_000, 19);
+            DocumentStore.write(lst, documentFormatter, path);
+            try (DocumentStore store = DocumentStore.open(path, documentFormatter)) {
+                StringBuilder stringBuilder = new StringBuilder();
+                store.writeDocumentsReport(stringBuilder);
+                Validate.isTrue(stringBuilder.toString().equals(new Document().printDocumentsReportHelper(lst).toString()));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void test_WhenTheFileIsNotAStore_OpeningFails() throws IOException {
+        Path path = Files.createTempFile("veev-store-", ".bin");
+        try {
+            Files.write(path, "Andy Andrews,Andy Zed,,924 k,1300-01-01,1300-01-01".getBytes());
+            boolean isThrown = false;
+            try {
+                DocumentStore.open(path, new DocumentFormatter()).close();
+            } catch (IllegalArgumentException e) {
+                log.info("e = {}", e.getMessage());
+                isThrown = true;
+            }
+            Validate.isTrue(isThrown);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
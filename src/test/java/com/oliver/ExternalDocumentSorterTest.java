@@ -0,0 +1,92 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class ExternalDocumentSorterTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenSpillingRunsOfAnySize_TheReportMatchesTheInMemoryOne() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        Path tempDirectory = Files.createTempDirectory("veev-test-");
+        try {
+            for (int runSize : new int[]{1, 2, 3, 1000}) {
+                StringBuilder stringBuilder = new StringBuilder();
+                new ExternalDocumentSorter(documentFormatter, runSize, tempDirectory).writeDocumentsReport(sampleDocuments(documentFormatter).iterator(), stringBuilder);
+                Validate.isTrue(stringBuilder.toString().equals(SAMPLE_REPORT));
+                // the runs are cleaned up
+                try (Stream<Path> files = Files.list(tempDirectory)) {
+                    Validate.isTrue(files.count() == 0);
+                }
+            }
+        } finally {
+            Files.delete(tempDirectory);
+        }
+    }
+
+    @Test
+    void test_WhenManyDocumentsShareAuthorsAndTimes_TheOrderIsStableAndMatchesTheSerialPath() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 5000, 42);
+
+        StringBuilder stringBuilder = new StringBuilder();
+        new ExternalDocumentSorter(documentFormatter, 333, null).writeDocumentsReport(lst.iterator(), stringBuilder);
+        Validate.isTrue(stringBuilder.toString().equals(new Document().printDocumentsReportHelper(lst).toString()));
+    }
+
+    @Test
+    void test_WhenCreatedTimeIsMissing_TheDocumentComesFirstAsInMemory() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 2000, 43);
+        for (int i = 0; i < lst.size(); i += 7) {
+            lst.get(i).setCreatedTime(null);
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+        new ExternalDocumentSorter(documentFormatter, 100, null).writeDocumentsReport(lst.iterator(), stringBuilder);
+        Validate.isTrue(stringBuilder.toString().equals(new Document().printDocumentsReportHelper(lst).toString()));
+    }
+
+    /**
+     * few authors differing only by case, few days, and names recording the input position so ties are visible
+     */
+    static List<Document> randomDocuments(final DocumentFormatter documentFormatter, final int count, final long seed) {
+        String[] authors = {"Andy", "andy", "ANDY", "Bob", "carol", "Carol", "zed"};
+        Random random = new Random(seed);
+        List<Document> lst = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String time = String.format("20%02d-0%d-1%d", random.nextInt(20), 1 + random.nextInt(9), random.nextInt(10));
+            lst.add(new Document(documentFormatter, authors[random.nextInt(authors.length)], "doc " + i, "description of doc " + i,
+                    (1 + random.nextInt(999)) + " k", time, time));
+        }
+        return lst;
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,88 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class IndexedDocumentCollectionTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenQueryingRanges_TheReportMatchesTheFilteredHelper() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 20_000, 41);
+        lst.addAll(sampleDocuments(documentFormatter));
+        // missing values never match a range
+        lst.get(1).setSizeInBytes(null);
+        lst.get(2).setCreatedTime(null);
+        lst.get(3).setModifiedTime(null);
+        IndexedDocumentCollection collection = IndexedDocumentCollection.fromDocuments(lst, documentFormatter);
+        Document document = new Document();
+
+        // corner cases
+        IndexedDocumentCollection.Query all = IndexedDocumentCollection.Query.all();
+        Validate.isTrue(collection.printDocumentsReportHelper(all).toString().equals(document.printDocumentsReportHelper(lst).toString()));
+        Validate.isTrue(collection.count(all.byAuthors("nobody")) == 0);
+        Validate.isTrue(collection.count(all.createdBetween(1, 0)) == 0);
+        Validate.isTrue(collection.count(all.byAuthors("Zoo")) == 1);
+        // the widest range is still a range, the missing values stay out
+        Validate.isTrue(collection.count(all.createdBetween(Long.MIN_VALUE, Long.MAX_VALUE)) == lst.size() - 1);
+        Validate.isTrue(collection.count(all.modifiedBetween(Long.MIN_VALUE, Long.MAX_VALUE)) == lst.size() - 1);
+        Validate.isTrue(collection.count(all.sizeBetween(Long.MIN_VALUE, Long.MAX_VALUE)) == lst.size() - 1);
+        Validate.isTrue(collection.count(all.createdBetween(Long.MIN_VALUE, Long.MAX_VALUE).sizeBetween(Long.MIN_VALUE, Long.MAX_VALUE)) == lst.size() - 2);
+
+        Random random = new Random(43);
+        long year2000 = documentFormatter.parseTime("2000-01-01");
+        long year2020 = documentFormatter.parseTime("2020-01-01");
+        for (int i = 0; i < 200; i++) {
+            long createdFrom = year2000 + (long) (random.nextDouble() * (year2020 - year2000));
+            long createdTo = createdFrom + (long) (random.nextDouble() * (year2020 - createdFrom));
+            long sizeFrom = random.nextInt(1000) * 1024L;
+            long sizeTo = sizeFrom + random.nextInt(200) * 1024L;
+            IndexedDocumentCollection.Query query = all;
+            List<Predicate<Document>> predicates = new ArrayList<>();
+            if (random.nextBoolean()) {
+                query = query.createdBetween(createdFrom, createdTo);
+                predicates.add(d -> d.createdTime != null && createdFrom <= d.createdTime && d.createdTime <= createdTo);
+            }
+            if (random.nextBoolean()) {
+                query = query.modifiedBetween(createdFrom, createdTo);
+                predicates.add(d -> d.modifiedTime != null && createdFrom <= d.modifiedTime && d.modifiedTime <= createdTo);
+            }
+            if (random.nextBoolean()) {
+                query = query.sizeBetween(sizeFrom, sizeTo);
+                predicates.add(d -> d.sizeInBytes != null && sizeFrom <= d.sizeInBytes && d.sizeInBytes <= sizeTo);
+            }
+            if (random.nextInt(3) == 0) {
+                query = query.byAuthors("andy", "Carol", "nobody");
+                predicates.add(d -> d.createdBy.equals("andy") || d.createdBy.equals("Carol"));
+            }
+            List<Document> expected = lst.stream().filter(d -> predicates.stream().allMatch(p -> p.test(d))).collect(Collectors.toList());
+            Validate.isTrue(collection.printDocumentsReportHelper(query).toString().equals(document.printDocumentsReportHelper(expected).toString()), "query " + i);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,60 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class ParallelDocumentReporterTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenReportingInParallel_TheContentsMatchTheSerialPath() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            // corner cases
+            StringBuilder empty = new StringBuilder();
+            new ParallelDocumentReporter(forkJoinPool).writeDocumentsReport(new LinkedList<>(), empty);
+            Validate.isTrue(empty.toString().equals(""));
+
+            StringBuilder sample = new StringBuilder();
+            new ParallelDocumentReporter(forkJoinPool).writeDocumentsReport(sampleDocuments(documentFormatter), sample);
+            Validate.isTrue(sample.toString().equals(SAMPLE_REPORT));
+
+            // tiny batches and a tiny window exercise the in order hand over
+            List<Document> lst = randomDocuments(documentFormatter, 20000, 7);
+            String expected = new Document().printDocumentsReportHelper(lst).toString();
+            for (int batchSize : new int[]{1, 100, 100000}) {
+                StringBuilder stringBuilder = new StringBuilder();
+                new ParallelDocumentReporter(forkJoinPool, batchSize, 2).writeDocumentsReport(lst, stringBuilder);
+                Validate.isTrue(stringBuilder.toString().equals(expected));
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,76 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class RadixSortTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenRadixSorting_TheOrderMatchesTheStableMergeSort() {
+        Random random = new Random(19);
+        RadixSort radixSort = new RadixSort();
+        for (int size : new int[]{0, 1, 17, RadixSort.MIN_RADIX_LENGTH - 1, RadixSort.MIN_RADIX_LENGTH, 5_000, 100_000}) {
+            long[] keys = new long[size];
+            for (int row = 0; row < size; row++) {
+                switch (random.nextInt(6)) {
+                    case 0:
+                        keys[row] = DocumentBatch.NULL_VALUE;
+                        break;
+                    case 1:
+                        keys[row] = Long.MAX_VALUE;
+                        break;
+                    case 2:
+                        keys[row] = -random.nextInt(1000);
+                        break;
+                    default:
+                        // timestamps over a few days, many of them equal
+                        keys[row] = 1_500_000_000_000L + random.nextInt(300_000) * 1000L;
+                }
+            }
+            // a sub range, so from and to are honoured
+            int[] expected = new int[size + 2];
+            for (int row = 0; row < size; row++) {
+                expected[row + 1] = size - 1 - row;
+            }
+            int[] actual = expected.clone();
+            DocumentBatch.mergeSort(expected, new int[expected.length], 1, size + 1, keys);
+            radixSort.sort(actual, 1, size + 1, keys);
+            Validate.isTrue(Arrays.equals(expected, actual), "size " + size);
+        }
+    }
+
+    @Test
+    void test_WhenAllKeysAreEqual_TheRowsKeepTheirOrder() {
+        int size = 10_000;
+        long[] keys = new long[size];
+        Arrays.fill(keys, 42L);
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            rows[row] = row;
+        }
+        new RadixSort().sort(rows, 0, size, keys);
+        for (int row = 0; row < size; row++) {
+            Validate.isTrue(rows[row] == row);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        log.info("Test End!\n");
+    }
+}
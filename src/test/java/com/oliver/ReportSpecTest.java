@@ -0,0 +1,102 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static com.oliver.DocumentTest.SAMPLE_REPORT;
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class ReportSpecTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenUsingTheDefaultSpec_TheContentsMatchTheHelper() {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        Validate.isTrue(ReportSpec.DEFAULT.printDocumentsReportHelper(sampleDocuments(documentFormatter)).toString().equals(SAMPLE_REPORT));
+
+        // missing createdTimes come first instead of throwing
+        List<Document> lst = randomDocuments(documentFormatter, 5000, 31);
+        for (int i = 0; i < lst.size(); i += 7) {
+            lst.get(i).setCreatedTime(null);
+        }
+        Validate.isTrue(ReportSpec.DEFAULT.printDocumentsReportHelper(lst).toString().equals(new Document().printDocumentsReportHelper(lst).toString()));
+    }
+
+    @Test
+    void test_WhenUsingOtherSpecs_TheContentsMatchAComparatorSort() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        List<Document> lst = randomDocuments(documentFormatter, 5000, 37);
+        Random random = new Random(41);
+        String[] editors = {"Andy", "bob", "Bob", "eve"};
+        for (Document document : lst) {
+            document.setLastModifiedBy(random.nextInt(5) == 0 ? null : editors[random.nextInt(editors.length)]);
+            document.setSizeInBytes(random.nextInt(6) == 0 ? null : (long) random.nextInt(50) << 10);
+            document.setModifiedTime(random.nextInt(6) == 0 ? null : document.getModifiedTime());
+        }
+
+        ReportSpec[] specs = {
+                new ReportSpec(ReportSpec.GroupBy.LAST_MODIFIED_BY, ReportSpec.SortKey.descending(ReportSpec.Field.SIZE_IN_BYTES)),
+                new ReportSpec(ReportSpec.GroupBy.CREATED_BY, ReportSpec.SortKey.ascending(ReportSpec.Field.MODIFIED_TIME).withNullFirst(false)),
+                new ReportSpec(ReportSpec.GroupBy.CREATED_BY, ReportSpec.SortKey.descending(ReportSpec.Field.SIZE_IN_BYTES).withNullFirst(true),
+                        ReportSpec.SortKey.ascending(ReportSpec.Field.CREATED_TIME)),
+                new ReportSpec(ReportSpec.GroupBy.LAST_MODIFIED_BY),
+        };
+        for (ReportSpec spec : specs) {
+            String expected = reference(spec, lst);
+            Validate.isTrue(spec.printDocumentsReportHelper(lst).toString().equals(expected));
+            StringBuilder fromBatch = new StringBuilder();
+            spec.writeDocumentsReport(DocumentBatch.fromDocuments(lst, documentFormatter), fromBatch);
+            Validate.isTrue(fromBatch.toString().equals(expected));
+        }
+    }
+
+    /**
+     * the same report with boxed comparators, the way it would be written by hand
+     */
+    private static String reference(final ReportSpec spec, final List<Document> lst) {
+        Map<String, List<Document>> groups = new HashMap<>();
+        for (Document document : lst) {
+            String key = spec.getGroupBy() == ReportSpec.GroupBy.CREATED_BY ? document.getCreatedBy() : document.getLastModifiedBy();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(document);
+        }
+        Comparator<Document> order = (o1, o2) -> 0;
+        for (ReportSpec.SortKey sortKey : spec.getSortKeys()) {
+            Comparator<Long> values = sortKey.isDescending() ? Comparator.reverseOrder() : Comparator.naturalOrder();
+            values = sortKey.isNullFirst() ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+            order = order.thenComparing(document -> sortKey.getField() == ReportSpec.Field.CREATED_TIME ? document.getCreatedTime()
+                    : sortKey.getField() == ReportSpec.Field.MODIFIED_TIME ? document.getModifiedTime() : document.getSizeInBytes(), values);
+        }
+        List<String> keys = new ArrayList<>(groups.keySet());
+        keys.sort(Comparator.nullsLast(Document.CREATED_BY_ORDER));
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String key : keys) {
+            List<Document> group = groups.get(key);
+            group.sort(order);
+            stringBuilder.append(key).append('\n');
+            for (Document document : group) {
+                stringBuilder.append(document.toStringBeautify()).append('\n');
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @AfterAll
+    static void cleanUp() {
+        log.info("Test End!\n");
+    }
+}
@@ -0,0 +1,135 @@
+package com.oliver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.Validate;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.oliver.DocumentTest.sampleDocuments;
+import static com.oliver.ExternalDocumentSorterTest.randomDocuments;
+
+/**
+ * Author: Oliver
+ */
+@Slf4j
+class ShardedDocumentReporterTest {
+
+    @BeforeAll
+    static void setUp() {
+        log.info("Test Begin!\n");
+    }
+
+    @Test
+    void test_WhenMergingPartialFiles_TheReportMatchesTheHelperOnAllShards() throws IOException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        Path directory = Files.createTempDirectory("veev-shards-");
+        try {
+            // corner cases
+            Validate.isTrue(ShardedDocumentReporter.mergePartials(new ArrayList<>(), documentFormatter, new StringBuilder()) == 0);
+            Path empty = directory.resolve("empty.bin");
+            ShardedDocumentReporter.writePartial(new ArrayList<>(), empty);
+
+            // the same authors and days in every shard, so the merge interleaves them
+            List<Document> all = new ArrayList<>();
+            List<Path> partials = new ArrayList<>();
+            partials.add(empty);
+            for (int shard = 0; shard < 4; shard++) {
+                List<Document> documents = randomDocuments(documentFormatter, 5_000, shard);
+                if (shard == 1) {
+                    documents.addAll(sampleDocuments(documentFormatter));
+                    documents.get(0).setCreatedTime(null);
+                    documents.get(1).setSizeInBytes(null);
+                    documents.get(2).setLastModifiedBy("Zo\u00eb");
+                }
+                Path partial = directory.resolve("shard-" + shard + ".bin");
+                ShardedDocumentReporter.writePartial(documents, partial);
+                partials.add(partial);
+                all.addAll(documents);
+            }
+            StringBuilder stringBuilder = new StringBuilder();
+            Validate.isTrue(ShardedDocumentReporter.mergePartials(partials, documentFormatter, stringBuilder) == all.size());
+            Validate.isTrue(stringBuilder.toString().equals(new Document().printDocumentsReportHelper(all).toString()));
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    void test_WhenShardingAcrossProcesses_TheMergedReportMatchesTheHelper() throws IOException, InterruptedException {
+        DocumentFormatter documentFormatter = new DocumentFormatter();
+        Path directory = Files.createTempDirectory("veev-shards-");
+        try {
+            String[] authors = {"Andy", "andy", "ANDY", "Bob", "carol", "Carol", "zed"};
+            Random random = new Random(53);
+            List<Process> workers = new ArrayList<>();
+            List<String> mergeCommand = command("merge", directory.resolve("report.txt").toString());
+            StringBuilder allRows = new StringBuilder();
+            for (int shard = 0; shard < 3; shard++) {
+                StringBuilder csv = new StringBuilder();
+                for (int i = 0; i < 3_000; i++) {
+                    String time = String.format("20%02d-0%d-1%d", random.nextInt(20), 1 + random.nextInt(9), random.nextInt(10));
+                    csv.append(authors[random.nextInt(authors.length)]).append(",doc ").append(shard).append('-').append(i)
+                            .append(",\"description, of doc\",").append(1 + random.nextInt(999)).append(" k,")
+                            .append(time).append(',').append(time).append('\n');
+                }
+                allRows.append(csv);
+                Path input = directory.resolve("shard-" + shard + ".csv");
+                Path partial = directory.resolve("shard-" + shard + ".bin");
+                Files.write(input, csv.toString().getBytes(StandardCharsets.UTF_8));
+                workers.add(start(command("shard", input.toString(), partial.toString()), directory));
+                mergeCommand.add(partial.toString());
+            }
+            for (Process worker : workers) {
+                Validate.isTrue(worker.waitFor(2, TimeUnit.MINUTES) && worker.exitValue() == 0, "shard worker failed");
+            }
+            Process merger = start(mergeCommand, directory);
+            Validate.isTrue(merger.waitFor(2, TimeUnit.MINUTES) && merger.exitValue() == 0, "merge failed");
+
+            Path allInput = directory.resolve("all.csv");
+            Files.write(allInput, allRows.toString().getBytes(StandardCharsets.UTF_8));
+            List<Document> all = new DocumentBulkLoader(documentFormatter).loadDocuments(allInput).getData();
+            Validate.isTrue(all.size() == 9_000);
+            String report = new String(Files.readAllBytes(directory.resolve("report.txt")), StandardCharsets.UTF_8);
+            Validate.isTrue(report.equals(new Document().printDocumentsReportHelper(all).toString()));
+        } finally {
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    /**
+     * a child JVM on the class path of this one
+     */
+    private static List<String> command(final String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardedDocumentReporter.class.getName());
+        for (String arg : args) {
+            command.add(arg);
+        }
+        return command;
+    }
+
+    private static Process start(final List<String> command, final Path directory) throws IOException {
+        return new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true)
+                .redirectOutput(directory.resolve("worker-" + System.nanoTime() + ".log").toFile()).start();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        log.info("Test End!\n");
+    }
+}